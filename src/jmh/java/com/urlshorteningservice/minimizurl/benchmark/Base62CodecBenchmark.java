@@ -0,0 +1,58 @@
+package com.urlshorteningservice.minimizurl.benchmark;
+
+import com.urlshorteningservice.minimizurl.service.ShorteningService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookup-table codec in ShorteningService with the previous
+ * StringBuilder.insert / indexOf implementation, for sequence-sized and
+ * Snowflake-sized ids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base62CodecBenchmark {
+
+    // A six-digit sequence id and a typical Snowflake id
+    @Param({"916132", "231391235762438145"})
+    public long id;
+
+    private final ShorteningService current = new ShorteningService();
+    private final LegacyBase62Codec legacy = new LegacyBase62Codec();
+    private String code;
+
+    @Setup
+    public void setUp() {
+        code = current.encode(id);
+    }
+
+    @Benchmark
+    public String encodeCurrent() {
+        return current.encode(id);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return legacy.encode(id);
+    }
+
+    @Benchmark
+    public long decodeCurrent() {
+        return current.decode(code);
+    }
+
+    @Benchmark
+    public long decodeLegacy() {
+        return legacy.decode(code);
+    }
+
+    @Benchmark
+    public boolean isValidGeneratedCode() {
+        return current.isValidGeneratedCode(code);
+    }
+}
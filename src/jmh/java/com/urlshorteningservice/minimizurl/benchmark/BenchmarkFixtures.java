@@ -0,0 +1,63 @@
+package com.urlshorteningservice.minimizurl.benchmark;
+
+import com.urlshorteningservice.minimizurl.repository.UserRepository;
+import com.urlshorteningservice.minimizurl.service.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wires services by hand, the way the Spring context would, but on top of InMemoryMongo.
+ * Constructor changes in the services only need to be mirrored here.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static UrlService urlService(InMemoryMongo mongo, long cacheSize, ClickEventPipeline pipeline) {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ShorteningService shorteningService = new ShorteningService();
+        SequenceGeneratorService sequenceGenerator = new SequenceGeneratorService(mongo.mongoTemplate(),
+                "mongo-sequence", 1000, 0.2, -1, Instant.parse("2025-01-01T00:00:00Z"), 10);
+        UrlMappingCache cache = new UrlMappingCache(cacheSize, Duration.ofMinutes(10), Duration.ofHours(24),
+                Duration.ofMinutes(1), Duration.ofSeconds(5), 2, registry);
+        // Filter enabled but never loaded: every code is treated as possibly present
+        ShortCodeFilter filter = new ShortCodeFilter(mongo.mongoTemplate(), shorteningService, registry,
+                true, 1_000_000, 0.01, DataSize.ofMegabytes(16), 100_000, Duration.ofSeconds(30), Duration.ofSeconds(5));
+        ShortCodeIndex shortCodes = new ShortCodeIndex(mongo.mongoTemplate(), shorteningService, false);
+        CircuitBreaker breaker = circuitBreaker(registry);
+        ClickCounterBuffer counters = new ClickCounterBuffer(mongo.mongoTemplate(), shortCodes, breaker, registry,
+                Duration.ofSeconds(5), 10_000);
+        // Never flushed here: sketches stay in memory, bounded by the number of links
+        UniqueVisitorCounter visitors = new UniqueVisitorCounter(mongo.mongoTemplate(), registry,
+                new AnalyticsNodeId("bench", Path.of("analytics-node-id")), Duration.ofDays(30));
+        // Disabled, as in the default configuration: redirects start at the cache
+        RedirectTable redirectTable = new RedirectTable(mongo.mongoTemplate(), registry, false,
+                Path.of("redirect-table"), 1_000_000, DataSize.ofMegabytes(64), Duration.ofHours(24));
+
+        return new UrlService(mongo.urlMappingRepository(), shorteningService, sequenceGenerator,
+                mongo.mongoTemplate(), InMemoryMongo.fakeRepository(UserRepository.class, Map.of()), cache, filter, counters, pipeline,
+                visitors, shortCodes, breaker, redirectTable);
+    }
+
+    // Production defaults; the in-memory store never trips it
+    static CircuitBreaker circuitBreaker(MeterRegistry registry) {
+        return new CircuitBreaker("mongo", 100, 20, 0.5, Duration.ofMillis(500), Duration.ofSeconds(10), 5, registry);
+    }
+
+    // Pipeline whose consumer writes into the in-memory template, i.e. discards batches
+    static ClickEventPipeline clickEventPipeline(InMemoryMongo mongo) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new ClickEventPipeline(new ClickEventStore(mongo.mongoTemplate(), Duration.ofDays(400)),
+                circuitBreaker(registry), registry, List.of(), 50_000, 500,
+                Duration.ofMillis(200), ClickEventPipeline.OverflowPolicy.DROP, Duration.ofMillis(100),
+                Duration.ofSeconds(10));
+    }
+}
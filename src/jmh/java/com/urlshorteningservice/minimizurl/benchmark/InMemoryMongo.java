@@ -0,0 +1,262 @@
+package com.urlshorteningservice.minimizurl.benchmark;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import com.urlshorteningservice.minimizurl.domain.DatabaseSequence;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import com.urlshorteningservice.minimizurl.repository.UrlMappingRepository;
+import com.urlshorteningservice.minimizurl.service.ShorteningService;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexOptions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Minimal in-memory stand-in for the url_mappings, short_codes and database_sequences collections.
+ * Answers exactly the calls UrlService makes (short_codes findById/insert, findOne by
+ * _id/customCode, save, existsByCustomCode, findAndModify on the sequence) without a running mongod,
+ * so benchmarks measure application overhead rather than network latency.
+ * Plain overrides rather than mocks: nothing records invocations, so the heap stays flat.
+ * Any other call reaches the unconnected database factory and fails loudly.
+ */
+final class InMemoryMongo {
+
+    private static final long FIRST_SEQUENCE = 100_000;
+
+    private final Map<Long, UrlMapping> byId = new ConcurrentHashMap<>();
+    private final Map<String, UrlMapping> byCustomCode = new ConcurrentHashMap<>();
+    private final Map<String, ShortCode> shortCodes = new ConcurrentHashMap<>();
+    private final List<UrlMapping> seeded = new ArrayList<>();
+    private final ShorteningService shorteningService = new ShorteningService();
+    private final AtomicLong sequence = new AtomicLong(FIRST_SEQUENCE);
+
+    private final MongoTemplate mongoTemplate = new InMemoryTemplate();
+    private final UrlMappingRepository urlMappingRepository = fakeRepository(UrlMappingRepository.class, Map.of(
+            "save", args -> {
+                UrlMapping mapping = (UrlMapping) args[0];
+                index(mapping);
+                return mapping;
+            },
+            "existsByCustomCode", args -> byCustomCode.containsKey((String) args[0])));
+
+    // Seeds a mapping together with its short_codes entries, as if created through UrlService
+    void put(UrlMapping mapping) {
+        seeded.add(mapping);
+        index(mapping);
+    }
+
+    // Drops everything written since seeding, so long runs of shortenUrl don't grow the maps
+    void reset() {
+        byId.clear();
+        byCustomCode.clear();
+        shortCodes.clear();
+        seeded.forEach(this::index);
+        sequence.set(FIRST_SEQUENCE);
+    }
+
+    MongoTemplate mongoTemplate() {
+        return mongoTemplate;
+    }
+
+    UrlMappingRepository urlMappingRepository() {
+        return urlMappingRepository;
+    }
+
+    /**
+     * Repository whose listed methods run the given answers; everything else throws.
+     */
+    static <T> T fakeRepository(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object fake = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "fake " + type.getSimpleName();
+                default:
+                    Function<Object[], Object> answer = answers.get(method.getName());
+                    if (answer == null) {
+                        throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+                    }
+                    return answer.apply(args);
+            }
+        });
+        return type.cast(fake);
+    }
+
+    private void index(UrlMapping mapping) {
+        byId.put(mapping.getId(), mapping);
+        String generated = shorteningService.encode(mapping.getId());
+        shortCodes.put(generated, ShortCode.of(generated, mapping));
+        if (mapping.getCustomCode() != null) {
+            byCustomCode.put(mapping.getCustomCode(), mapping);
+            shortCodes.put(mapping.getCustomCode(), ShortCode.of(mapping.getCustomCode(), mapping));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private UrlMapping findMapping(Document query) {
+        if (query.containsKey("$or")) {
+            for (Document branch : (List<Document>) query.get("$or")) {
+                UrlMapping match = findMapping(branch);
+                if (match != null) {
+                    return match;
+                }
+            }
+            return null;
+        }
+        if (query.containsKey("_id")) {
+            return byId.get(((Number) query.get("_id")).longValue());
+        }
+        return byCustomCode.get(query.getString("customCode"));
+    }
+
+    private final class InMemoryTemplate extends MongoTemplate {
+
+        InMemoryTemplate() {
+            super(new UnconnectedDatabaseFactory(), converter());
+        }
+
+        @Override
+        public <T> T findOne(Query query, Class<T> entityClass) {
+            if (entityClass != UrlMapping.class) {
+                return super.findOne(query, entityClass);
+            }
+            return entityClass.cast(findMapping(query.getQueryObject()));
+        }
+
+        @Override
+        public <T> T findAndModify(Query query, UpdateDefinition update, FindAndModifyOptions options,
+                                   Class<T> entityClass) {
+            if (entityClass != DatabaseSequence.class) {
+                return super.findAndModify(query, update, options, entityClass);
+            }
+            long increment = update.getUpdateObject().get("$inc", Document.class).get("seq", Number.class).longValue();
+            DatabaseSequence counter = new DatabaseSequence();
+            counter.setSeq(sequence.addAndGet(increment));
+            return entityClass.cast(counter);
+        }
+
+        @Override
+        public <T> T findById(Object id, Class<T> entityClass) {
+            if (entityClass != ShortCode.class) {
+                return super.findById(id, entityClass);
+            }
+            return entityClass.cast(shortCodes.get((String) id));
+        }
+
+        @Override
+        public <T> T insert(T objectToSave) {
+            if (!(objectToSave instanceof ShortCode code)) {
+                return super.insert(objectToSave);
+            }
+            if (shortCodes.putIfAbsent(code.getCode(), code) != null) {
+                throw new DuplicateKeyException(code.getCode());
+            }
+            return objectToSave;
+        }
+
+        // Click event buckets: inserts are discarded
+        @Override
+        public <T> Collection<T> insert(Collection<? extends T> batchToSave, String collectionName) {
+            return new ArrayList<>(batchToSave);
+        }
+
+        @Override
+        public IndexOperations indexOps(String collectionName) {
+            return NoOpIndexOperations.INSTANCE;
+        }
+
+        private static MappingMongoConverter converter() {
+            MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE,
+                    new MongoMappingContext());
+            converter.afterPropertiesSet();
+            return converter;
+        }
+    }
+
+    private static final class UnconnectedDatabaseFactory implements MongoDatabaseFactory {
+
+        @Override
+        public MongoDatabase getMongoDatabase() {
+            throw new UnsupportedOperationException("InMemoryMongo has no database");
+        }
+
+        @Override
+        public MongoDatabase getMongoDatabase(String dbName) {
+            throw new UnsupportedOperationException("InMemoryMongo has no database");
+        }
+
+        @Override
+        public CodecRegistry getCodecRegistry() {
+            return MongoClientSettings.getDefaultCodecRegistry();
+        }
+
+        @Override
+        public PersistenceExceptionTranslator getExceptionTranslator() {
+            return MongoExceptionTranslator.DEFAULT_EXCEPTION_TRANSLATOR;
+        }
+
+        @Override
+        public ClientSession getSession(ClientSessionOptions options) {
+            throw new UnsupportedOperationException("InMemoryMongo has no sessions");
+        }
+
+        @Override
+        public MongoDatabaseFactory withSession(ClientSession session) {
+            throw new UnsupportedOperationException("InMemoryMongo has no sessions");
+        }
+    }
+
+    private enum NoOpIndexOperations implements IndexOperations {
+        INSTANCE;
+
+        @Override
+        public String ensureIndex(IndexDefinition indexDefinition) {
+            return "";
+        }
+
+        @Override
+        public void alterIndex(String name, IndexOptions options) {
+        }
+
+        @Override
+        public void dropIndex(String name) {
+        }
+
+        @Override
+        public void dropAllIndexes() {
+        }
+
+        @Override
+        public List<IndexInfo> getIndexInfo() {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.urlshorteningservice.minimizurl.benchmark;
+
+import com.urlshorteningservice.minimizurl.config.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token handling as JwtAuthenticationFilter performs it on every authenticated request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilsBenchmark {
+
+    private static final List<String> ROLES = List.of("ROLE_USER");
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    // Zero TTL, so every call pays for verification
+    private JwtUtils uncachedJwtUtils;
+    private String uncachedToken;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils(10_000, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        token = jwtUtils.generateToken("507f1f77bcf86cd799439011", ROLES);
+        uncachedJwtUtils = new JwtUtils(10_000, Duration.ZERO, new SimpleMeterRegistry());
+        uncachedToken = uncachedJwtUtils.generateToken("507f1f77bcf86cd799439011", ROLES);
+    }
+
+    // Repeat presentation of the same token: served from the verified-token cache
+    @Benchmark
+    public String parseVerifiedClaimsCached() {
+        Claims claims = jwtUtils.parseVerifiedClaims(token);
+        return claims != null ? claims.getSubject() : null;
+    }
+
+    // First presentation: full HMAC verification and JSON parsing
+    @Benchmark
+    public String parseVerifiedClaimsFresh() {
+        Claims claims = uncachedJwtUtils.parseVerifiedClaims(uncachedToken);
+        return claims != null ? claims.getSubject() : null;
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken("507f1f77bcf86cd799439011", ROLES);
+    }
+}
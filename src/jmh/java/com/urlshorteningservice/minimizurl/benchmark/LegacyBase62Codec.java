@@ -0,0 +1,28 @@
+package com.urlshorteningservice.minimizurl.benchmark;
+
+// The codec ShorteningService shipped before the lookup-table rewrite, kept as a baseline
+final class LegacyBase62Codec {
+
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    String encode(long id){
+        StringBuilder shortUrl = new StringBuilder();
+        if(id == 0){
+            return String.valueOf(BASE62.charAt(0));
+        }
+        while(id > 0){
+            int rem = (int)(id % 62);
+            shortUrl.insert(0, BASE62.charAt(rem));
+            id /= 62;
+        }
+        return shortUrl.toString();
+    }
+
+    long decode(String shortUrl){
+        long id = 0;
+        for(int i = 0; i < shortUrl.length(); i++){
+            id = id * 62 + BASE62.indexOf(shortUrl.charAt(i));
+        }
+        return id;
+    }
+}
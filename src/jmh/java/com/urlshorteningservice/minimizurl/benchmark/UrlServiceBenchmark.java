@@ -0,0 +1,80 @@
+package com.urlshorteningservice.minimizurl.benchmark;
+
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import com.urlshorteningservice.minimizurl.service.ClickEventPipeline;
+import com.urlshorteningservice.minimizurl.service.ShorteningService;
+import com.urlshorteningservice.minimizurl.service.UrlService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of the redirect and shorten paths through UrlService,
+ * with MongoDB replaced by InMemoryMongo. "cached" resolves through the
+ * mapping cache; "uncached" runs with a zero-size cache so every redirect
+ * takes the lookup path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlServiceBenchmark {
+
+    private static final int LINKS = 10_000;
+
+    @Param({"cached", "uncached"})
+    public String cache;
+
+    private InMemoryMongo mongo;
+    private UrlService urlService;
+    private ClickEventPipeline pipeline;
+    private String[] codes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mongo = new InMemoryMongo();
+        ShorteningService shorteningService = new ShorteningService();
+        codes = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            long id = i + 1;
+            UrlMapping mapping = new UrlMapping(id, "https://example.com/articles/" + id,
+                    Instant.now().plus(30, ChronoUnit.DAYS));
+            mapping.setUserId("507f1f77bcf86cd799439011");
+            mongo.put(mapping);
+            codes[i] = shorteningService.encode(id);
+        }
+
+        pipeline = BenchmarkFixtures.clickEventPipeline(mongo);
+        pipeline.start();
+        urlService = BenchmarkFixtures.urlService(mongo, "cached".equals(cache) ? 100_000 : 0, pipeline);
+    }
+
+    // shortenUrl adds a mapping per call; start every iteration from the seeded links
+    @Setup(Level.Iteration)
+    public void resetStore() {
+        mongo.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.stop();
+    }
+
+    @Benchmark
+    public String getOriginalUrl() {
+        String code = codes[ThreadLocalRandom.current().nextInt(LINKS)];
+        return urlService.getOriginalUrl(code, "https://news.ycombinator.com/",
+                "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X) Mobile/15E148", "GUEST",
+                "203.0.113." + ThreadLocalRandom.current().nextInt(256));
+    }
+
+    @Benchmark
+    public String shortenUrl() {
+        return urlService.shortenUrl("https://example.com/landing?utm_source=benchmark");
+    }
+}
@@ -0,0 +1,54 @@
+package com.urlshorteningservice.minimizurl.benchmark;
+
+import com.urlshorteningservice.minimizurl.domain.User;
+import com.urlshorteningservice.minimizurl.repository.UserRepository;
+import com.urlshorteningservice.minimizurl.service.CustomUserDetailsService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CustomUserDetailsService.loadUserByUsername with an in-memory repository:
+ * the id-format regex plus UserDetails construction, minus the Mongo round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDetailsBenchmark {
+
+    private static final String USER_ID = "507f1f77bcf86cd799439011";
+
+    private CustomUserDetailsService userDetailsService;
+
+    @Setup
+    public void setUp() {
+        User user = User.builder()
+                .id(USER_ID)
+                .username("johndoe")
+                .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z3HjmHqkN6V7lG5F3rj2Vq6e")
+                .provider("LOCAL")
+                .roles(Set.of("ROLE_USER"))
+                .build();
+        UserRepository userRepository = InMemoryMongo.fakeRepository(UserRepository.class, Map.of(
+                "findById", args -> USER_ID.equals(args[0]) ? Optional.of(user) : Optional.empty(),
+                "findByUsername", args -> "johndoe".equals(args[0]) ? Optional.of(user) : Optional.empty()));
+        userDetailsService = new CustomUserDetailsService(userRepository);
+    }
+
+    @Benchmark
+    public UserDetails loadById() {
+        return userDetailsService.loadUserByUsername(USER_ID);
+    }
+
+    @Benchmark
+    public UserDetails loadByUsername() {
+        return userDetailsService.loadUserByUsername("johndoe");
+    }
+}
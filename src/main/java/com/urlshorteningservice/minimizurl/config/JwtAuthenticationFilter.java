@@ -1,5 +1,7 @@
 package com.urlshorteningservice.minimizurl.config;
 
+import com.urlshorteningservice.minimizurl.service.RevokedUserCache;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.io.IOException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -8,17 +10,21 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import java.util.List;
+
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtils jwtUtils;
     private final UserDetailsService userDetailsService;
+    private final RevokedUserCache revokedUserCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -32,23 +38,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             filterChain.doFilter(request, response); // Must call this to let guests through!
             return;
         }
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7); // Remove "Bearer " prefix
-
-            // 2. Validate the "Passport"
-            if (jwtUtils.validateToken(token)) {
-                String username = jwtUtils.getUsernameFromToken(token);
-                System.out.println("DEBUG: Token is valid for user: " + jwtUtils.getUsernameFromToken(token));
-                // 3. Load user details and set authentication
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        String token = authHeader.substring(7); // Remove "Bearer " prefix
+
+        // 2. Validate the "Passport" (one signature check, then cached until the token expires)
+        Claims claims = jwtUtils.parseVerifiedClaims(token);
+        if (claims != null) {
+            String userId = claims.getSubject();
+
+            // 3. Build the principal from the verified claims; no user lookup on the hot path
+            UserDetails userDetails = userDetailsFromClaims(claims);
+            if (userDetails == null) {
+                // Token issued before roles were embedded: fall back to loading the user
+                userDetails = userDetailsService.loadUserByUsername(userId);
+            }
+
+            // 4. Deleted accounts stop authenticating even though their tokens are still signed
+            if (!revokedUserCache.isRevoked(userId)) {
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
-
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             }
-        } else System.out.println("DEBUG: Token validation failed!");
+        }
 
-        // 4. Continue to the next filter or the Controller
+        // 5. Continue to the next filter or the Controller
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private UserDetails userDetailsFromClaims(Claims claims) {
+        List<String> roles = JwtUtils.getRoles(claims);
+        if (roles == null) {
+            return null;
+        }
+        String[] authorities = roles.stream()
+                .map(role -> role.startsWith("ROLE_") ? role : "ROLE_" + role)
+                .toArray(String[]::new);
+
+        return User.withUsername(claims.getSubject()) // The user id, as CustomUserDetailsService does
+                .password("")
+                .authorities(authorities)
+                .build();
+    }
+}
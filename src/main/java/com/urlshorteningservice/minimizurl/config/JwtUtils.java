@@ -1,58 +1,160 @@
 package com.urlshorteningservice.minimizurl.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Function;
 
 @Component
 public class JwtUtils {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtUtils.class);
+
     // Generate a secure key for HS256 algorithm
     private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
     private final long jwtExpirationMs = 86400000; // 24 hours
 
-    public String generateToken(String username) {
+    // Claim carrying the user's authorities, so requests can be authenticated without a user lookup
+    public static final String ROLES_CLAIM = "roles";
+
+    // Immutable and thread-safe once built, so one instance serves every request
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(key)
+            .build();
+
+    // SHA-256 of the compact token -> claims that already passed signature and expiry checks.
+    // A cryptographic digest is required: a forged token must never collide with a verified one.
+    private final Cache<String, Claims> verifiedTokens;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    public JwtUtils(@Value("${app.jwt.verified-cache.max-size:10000}") long maxSize,
+                    @Value("${app.jwt.verified-cache.max-ttl:5m}") Duration maxTtl,
+                    MeterRegistry meterRegistry) {
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(maxTtl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt_verified_tokens");
+    }
+
+    public String generateToken(String username, Collection<String> roles) {
         return Jwts.builder()
                 .setSubject(username)
+                .claim(ROLES_CLAIM, roles != null ? List.copyOf(roles) : List.of())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
                 .signWith(key, SignatureAlgorithm.HS256) //FIX: Explicit algorithm removes ambiguity
                 .compact();
     }
 
+    /**
+     * Verifies the token once and returns its claims, or null if the signature, format or
+     * expiry is invalid. Repeat presentations of the same token are answered from the cache
+     * until the token's own exp (capped at the configured max TTL). The returned claims are
+     * shared between requests and must be treated as read-only.
+     */
+    public Claims parseVerifiedClaims(String token) {
+        try {
+            return getAllClaimsFromToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Token validation error: {}", e.getMessage());
+            return null;
+        }
+    }
+
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
     }
 
+    // Null for tokens issued before roles were embedded
+    @SuppressWarnings("unchecked")
+    public static List<String> getRoles(Claims claims) {
+        return claims.get(ROLES_CLAIM, List.class);
+    }
+
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = getAllClaimsFromToken(token);
         return claimsResolver.apply(claims);
     }
 
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder() // Use parserBuilder for 0.11.x
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        String cacheKey = digest(token);
+        Claims claims = verifiedTokens.getIfPresent(cacheKey);
+        if (claims != null) {
+            return claims;
+        }
+        // Throws on a bad signature, malformed input or an expired token; failures are never cached
+        claims = parser.parseClaimsJws(token).getBody();
+        verifiedTokens.put(cacheKey, claims);
+        return claims;
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (Exception e) {
-            System.out.println("DEBUG: Token validation error: " + e.getMessage()); // Add this!
-            return false;
+        return parseVerifiedClaims(token) != null;
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    // Entries die with the token itself, so the cache can never extend a token's validity
+    private static final class TokenExpiry implements Expiry<String, Claims> {
+
+        private final long maxTtlNanos;
+
+        private TokenExpiry(Duration maxTtl) {
+            this.maxTtlNanos = maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return maxTtlNanos;
+            }
+            long remainingMillis = expiration.getTime() - System.currentTimeMillis();
+            return Math.max(0, Math.min(maxTtlNanos, Duration.ofMillis(remainingMillis).toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package com.urlshorteningservice.minimizurl.config;
+
+import com.urlshorteningservice.minimizurl.service.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MongoConfig {
+
+    // Without these the driver waits indefinitely (socket reads) or 30s (server selection),
+    // so a struggling database would hold request threads instead of failing fast
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoTimeouts(
+            @Value("${app.mongo.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${app.mongo.read-timeout:10s}") Duration readTimeout,
+            @Value("${app.mongo.server-selection-timeout:3s}") Duration serverSelectionTimeout,
+            @Value("${app.mongo.pool-max-wait:2s}") Duration poolMaxWait) {
+        return builder -> builder
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(serverSelectionTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxWaitTime(poolMaxWait.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    // Guards the redirect-path lookups; click writers consult it to defer while it is open
+    @Bean
+    public CircuitBreaker mongoCircuitBreaker(
+            @Value("${app.mongo.circuit-breaker.window-size:100}") int windowSize,
+            @Value("${app.mongo.circuit-breaker.min-calls:20}") int minCalls,
+            @Value("${app.mongo.circuit-breaker.failure-rate:0.5}") double failureRate,
+            @Value("${app.mongo.circuit-breaker.slow-call-threshold:500ms}") Duration slowCallThreshold,
+            @Value("${app.mongo.circuit-breaker.open-duration:10s}") Duration openDuration,
+            @Value("${app.mongo.circuit-breaker.probe-calls:5}") int probeCalls,
+            MeterRegistry meterRegistry) {
+        return new CircuitBreaker("mongo", windowSize, minCalls, failureRate,
+                slowCallThreshold, openDuration, probeCalls, meterRegistry);
+    }
+}
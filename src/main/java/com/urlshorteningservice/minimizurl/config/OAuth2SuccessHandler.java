@@ -41,7 +41,7 @@ public class OAuth2SuccessHandler extends SimpleUrlAuthenticationSuccessHandler
             return userRepository.save(newUser);
         });
 
-        String token = jwtUtils.generateToken(user.getId());
+        String token = jwtUtils.generateToken(user.getId(), user.getRoles());
 
         // REDIRECT TO YOUR ACTUAL AUTHCONTROLLER ENDPOINT
         // Redirect to frontend with token
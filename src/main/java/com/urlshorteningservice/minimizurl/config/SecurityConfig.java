@@ -36,6 +36,11 @@ public class SecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
                         .dispatcherTypeMatchers(DispatcherType.ERROR).permitAll()
+                        // Completion of an already-authorized streaming response (SSE, bulk results)
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
+                        // Owner listing shares its shape with the public '/mini/{shortCode}' redirect
+                        .requestMatchers("/mini/my-links").authenticated()
 
                         // Public endpoints - no auth required
                         .requestMatchers("/mini/shorten").permitAll()
@@ -51,6 +56,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.DELETE, "/api/auth/delete-account").hasRole("USER")
 
                         // 2. Shortening and Redirection
+                        .requestMatchers(HttpMethod.POST, "/mini/shorten/bulk").authenticated()
                         .requestMatchers(HttpMethod.POST, "/mini/shorten/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/mini/{shortCode}").permitAll()
 
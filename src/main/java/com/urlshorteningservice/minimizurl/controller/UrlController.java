@@ -1,20 +1,33 @@
 package com.urlshorteningservice.minimizurl.controller;
 
 import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import com.urlshorteningservice.minimizurl.dto.LinkPageResponse;
 import com.urlshorteningservice.minimizurl.dto.updateUrlRequest;
+import com.urlshorteningservice.minimizurl.exception.InvalidRequestException;
+import com.urlshorteningservice.minimizurl.exception.UnauthorizedAccessException;
 import com.urlshorteningservice.minimizurl.repository.UserRepository;
 import com.urlshorteningservice.minimizurl.service.AnalyticsService;
+import com.urlshorteningservice.minimizurl.service.BulkShortenService;
+import com.urlshorteningservice.minimizurl.service.ClickStreamHub;
+import com.urlshorteningservice.minimizurl.service.LinkExportService;
 import com.urlshorteningservice.minimizurl.service.UrlService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @RestController
@@ -25,6 +38,11 @@ public class UrlController {
     private final UrlService urlService;
     private final AnalyticsService analyticsService;
     private final UserRepository userRepository;
+    private final ClickStreamHub clickStreamHub;
+    private final BulkShortenService bulkShortenService;
+    private final LinkExportService linkExportService;
+
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
 
     @PostMapping("/shorten")
     public ResponseEntity<String> shortenUrl(
@@ -46,20 +64,79 @@ public class UrlController {
         return ResponseEntity.ok(result);
     }
 
+    // Body is a JSON array or NDJSON of {url, customCode}; results stream back as NDJSON, one line per item
+    @PostMapping(value = "/shorten/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> shortenBulk(HttpServletRequest request) throws IOException {
+        // The body is written on an async thread, where the security context is no longer set
+        String userId = getCurrentUserId();
+        InputStream in = request.getInputStream();
+        StreamingResponseBody body = out -> bulkShortenService.shorten(in, out, userId);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // Interactive listing, newest first; pass nextCursor back as 'cursor' for the following page
+    @GetMapping("/my-links")
+    public ResponseEntity<LinkPageResponse> getMyLinks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        String userId = getCurrentUserId();
+        if ("GUEST".equals(userId)) {
+            throw new UnauthorizedAccessException();
+        }
+
+        int boundedLimit = Math.max(1, Math.min(limit, 100));
+        return ResponseEntity.ok(urlService.getLinksPage(userId, cursor, boundedLimit));
+    }
+
+    // Every link the caller owns, streamed from a cursor; clicks=true adds click totals and the last click
+    @GetMapping("/my-links/export")
+    public ResponseEntity<StreamingResponseBody> exportLinks(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean clicks) {
+        String userId = getCurrentUserId();
+        if ("GUEST".equals(userId)) {
+            throw new UnauthorizedAccessException();
+        }
+
+        LinkExportService.Format exportFormat;
+        try {
+            exportFormat = LinkExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unsupported export format: " + format);
+        }
+
+        boolean csv = exportFormat == LinkExportService.Format.CSV;
+        StreamingResponseBody body = out -> linkExportService.export(userId, exportFormat, clicks, out);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"links." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
     @GetMapping("/{shortCode}")
     public void redirectUrl(
             @PathVariable String shortCode,
             @RequestHeader(value = "User-Agent", required = false) String userAgent,
             @RequestHeader(value = "Referer", required = false) String referer,
+            HttpServletRequest request,
             HttpServletResponse response) throws IOException {
 
         // Service throws LinkNotFoundException if mapping is missing
         String visitorId = getCurrentUserId();
-        String originalUrl = urlService.getOriginalUrl(shortCode, referer, userAgent, visitorId);
+        UrlService.Redirect redirect = urlService.redirect(shortCode, referer, userAgent, visitorId,
+                request.getRemoteAddr());
 
+        String originalUrl = redirect.originalUrl();
         if (!originalUrl.startsWith("http")) {
             originalUrl = "https://" + originalUrl;
         }
+        if (redirect.stale()) {
+            // Last-known target served while the mapping is refreshed (e.g. the database is slow or down)
+            response.setHeader(HttpHeaders.WARNING, STALE_WARNING);
+        }
         response.sendRedirect(originalUrl);
     }
 
@@ -95,14 +172,27 @@ public class UrlController {
 
         Long trueId = mapping.getId();
 
-        // 2. The rest of the logic remains clean and focused on data gathering
-        Map<String, Object> response = new HashMap<>();
-        response.put("summary", analyticsService.getClickStats(trueId));
-        response.put("topReferrers", analyticsService.getTopReferrers(trueId));
-        response.put("deviceBreakdown", analyticsService.getDeviceStats(trueId));
-        response.put("dailyTrend", analyticsService.getDailyClickTrend(trueId));
+        // 2. All four sections in one call; app.analytics.query-mode decides how they are fetched
+        return ResponseEntity.ok(analyticsService.getFullAnalytics(trueId));
+    }
+
+    @GetMapping("/{shortCode}/referrers")
+    public ResponseEntity<List<Map<String, Object>>> getTopReferrers(
+            @PathVariable String shortCode,
+            @RequestParam(defaultValue = "false") boolean exact,
+            @RequestParam(defaultValue = "5") int limit) {
+        // Same ownership rule as fstats
+        UrlMapping mapping = urlService.getMappingForUser(shortCode, getCurrentUserId());
 
-        return ResponseEntity.ok(response);
+        int boundedLimit = Math.max(1, Math.min(limit, 50));
+        return ResponseEntity.ok(analyticsService.getTopReferrers(mapping.getId(), exact, boundedLimit));
+    }
+
+    // Live per-second click deltas for the owner's dashboard (Server-Sent Events)
+    @GetMapping(value = "/{shortCode}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamClicks(@PathVariable String shortCode) {
+        UrlMapping mapping = urlService.getMappingForUser(shortCode, getCurrentUserId());
+        return clickStreamHub.subscribe(mapping.getId());
     }
 
     private String getCurrentUserId() {
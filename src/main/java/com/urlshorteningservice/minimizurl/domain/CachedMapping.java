@@ -0,0 +1,16 @@
+package com.urlshorteningservice.minimizurl.domain;
+
+import java.time.Instant;
+
+// Slim, immutable projection of a UrlMapping kept in memory for the redirect path
+public record CachedMapping(long id, String originalUrl, String userId, Instant expirationDate) {
+
+    public static CachedMapping from(UrlMapping mapping) {
+        return new CachedMapping(mapping.getId(), mapping.getOriginalUrl(),
+                mapping.getUserId(), mapping.getExpirationDate());
+    }
+
+    public boolean isExpired(Instant now) {
+        return expirationDate != null && expirationDate.isBefore(now);
+    }
+}
@@ -1,13 +1,14 @@
 package com.urlshorteningservice.minimizurl.domain;
 
 import lombok.Getter;
-import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
-@Document(collection = "click_events") // Explicitly naming the collection
+// Stored in monthly click_events_yyyy_MM buckets by ClickEventStore, which also creates their indexes.
+// Deliberately not a @Document: with auto-index-creation, mapped indexes would recreate the legacy
+// click_events collection on every start.
+@Getter
 public class ClickEvent {
 
     @Id
@@ -19,8 +20,7 @@ public class ClickEvent {
     private String ownerId;
     private String visitorId;
 
-    @Getter
-    @CreatedDate // Automatically set by Spring Data
+    // Set when the click happens, not when the batched insert reaches Mongo; decides the bucket
     private Instant timestamp;
 
     // No-args constructor required by Spring Data/MongoDB
@@ -32,5 +32,6 @@ public class ClickEvent {
         this.urlId = urlId;
         this.referer = referer;
         this.userAgent = userAgent;
+        this.timestamp = Instant.now();
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.urlshorteningservice.minimizurl.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-link, per-day click counters maintained incrementally from the click pipeline.
+ * One document per (urlId, UTC day), so analytics read O(days) documents instead of O(clicks) events.
+ * Referrer keys are stored escaped (see ClickRollupService.encodeKey) because Mongo field
+ * names cannot contain '.' or start with '$'.
+ */
+@Document(collection = "click_rollups")
+@CompoundIndex(name = "urlId_day", def = "{'urlId': 1, 'day': 1}")
+@Data
+@NoArgsConstructor // Required by MongoDB to create objects
+public class ClickRollup {
+
+    // "<urlId>:<yyyy-MM-dd>", so concurrent upserts for the same day converge on one document
+    @Id
+    private String id;
+
+    private Long urlId;
+
+    // UTC calendar day, ISO formatted; sorts lexicographically
+    private String day;
+
+    @Indexed
+    private String ownerId;
+
+    private long total;
+
+    private Map<String, Long> referrers = new HashMap<>();
+
+    private Map<String, Long> devices = new HashMap<>();
+
+    private Instant lastClick;
+}
@@ -0,0 +1,50 @@
+package com.urlshorteningservice.minimizurl.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters summary of a link's referrers, one entry per node.
+ * Each node only rewrites its own entry; readers merge them.
+ */
+@Document(collection = "referrer_sketches")
+@Data
+@NoArgsConstructor // Required by MongoDB to create objects
+public class ReferrerSketch {
+
+    // The link's id
+    @Id
+    private Long id;
+
+    @Indexed
+    private String ownerId;
+
+    private Map<String, NodeSummary> nodes = new HashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NodeSummary {
+        private long total;
+        private List<Counter> counters = new ArrayList<>();
+    }
+
+    // Referrers live in values rather than keys, so no field-name escaping is needed
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Counter {
+        private String referrer;
+        private long count;
+        private long error;
+    }
+}
@@ -0,0 +1,50 @@
+package com.urlshorteningservice.minimizurl.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Resolution index: one document per code that can be requested, generated (base62 of the id)
+ * and custom alike, keyed by the literal code. A redirect is a single _id point read, and the
+ * _id uniqueness makes this collection the authority on which link owns a code.
+ * Carries the fields the redirect path needs, so url_mappings is not read at all.
+ */
+@Document(collection = "short_codes")
+@Data
+@NoArgsConstructor // Required by MongoDB to create objects
+public class ShortCode {
+
+    @Id
+    private String code;
+
+    @Indexed
+    private long urlId;
+
+    private String originalUrl;
+
+    @Indexed
+    private String userId;
+
+    // Kept in step with url_mappings.expirationDate (create, update, click flushes)
+    @Indexed(expireAfter = "0s")
+    private Instant expirationDate;
+
+    public static ShortCode of(String code, UrlMapping mapping) {
+        ShortCode shortCode = new ShortCode();
+        shortCode.setCode(code);
+        shortCode.setUrlId(mapping.getId());
+        shortCode.setOriginalUrl(mapping.getOriginalUrl());
+        shortCode.setUserId(mapping.getUserId());
+        shortCode.setExpirationDate(mapping.getExpirationDate());
+        return shortCode;
+    }
+
+    public CachedMapping toCachedMapping() {
+        return new CachedMapping(urlId, originalUrl, userId, expirationDate);
+    }
+}
@@ -3,12 +3,17 @@ package com.urlshorteningservice.minimizurl.domain;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
 @Document(collection = "url_mappings")
+// Owner lookups (counts, cascade deletes) and per-owner listings walked in id order
+@CompoundIndex(name = "userId_id", def = "{'userId': 1, '_id': 1}")
+// /my-links pages, newest first
+@CompoundIndex(name = "userId_createdDate_id", def = "{'userId': 1, 'createdDate': -1, '_id': -1}")
 @Data
 @NoArgsConstructor // Required by MongoDB to create objects
 public class UrlMapping {
@@ -0,0 +1,44 @@
+package com.urlshorteningservice.minimizurl.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serialized HyperLogLog sketches of a link's visitors, one document per (urlId, UTC day)
+ * plus one all-time document whose day is "all". Each node writes only its own entry in
+ * 'nodes', so concurrent flushes never conflict; readers merge the entries.
+ */
+@Document(collection = "visitor_sketches")
+@CompoundIndex(name = "urlId_day", def = "{'urlId': 1, 'day': 1}")
+@Data
+@NoArgsConstructor // Required by MongoDB to create objects
+public class VisitorSketch {
+
+    public static final String ALL_TIME = "all";
+
+    // "<urlId>:<yyyy-MM-dd>" or "<urlId>:all"
+    @Id
+    private String id;
+
+    private Long urlId;
+
+    private String day;
+
+    @Indexed
+    private String ownerId;
+
+    // node id -> HyperLogLog.toBytes()
+    private Map<String, byte[]> nodes = new HashMap<>();
+
+    // End of the day plus app.analytics.visitors.day-retention; null on the all-time sketch
+    @Indexed(expireAfter = "0s")
+    private Instant expiresAt;
+}
@@ -0,0 +1,14 @@
+package com.urlshorteningservice.minimizurl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One item of a bulk shorten request (JSON array element or NDJSON line)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkShortenRequest {
+    private String url;
+    private String customCode;
+}
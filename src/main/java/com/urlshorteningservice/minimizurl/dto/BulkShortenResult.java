@@ -0,0 +1,23 @@
+package com.urlshorteningservice.minimizurl.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkShortenResult {
+
+    public static final String CREATED = "created";
+    public static final String CONFLICT = "conflict";
+    public static final String INVALID = "invalid";
+    public static final String FAILED = "failed";
+
+    // Position of the item in the request, so clients can match results to their input
+    private long index;
+    private String url;
+    private String shortCode;
+    private String status;
+    private String error;
+}
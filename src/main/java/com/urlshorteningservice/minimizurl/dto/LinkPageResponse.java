@@ -0,0 +1,15 @@
+package com.urlshorteningservice.minimizurl.dto;
+
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class LinkPageResponse {
+    private List<UrlMapping> links;
+    // Opaque token for the next page; null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,7 @@
+package com.urlshorteningservice.minimizurl.exception;
+
+public class InvalidRequestException extends MinimizUrlException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.urlshorteningservice.minimizurl.exception;
+
+public class ServiceUnavailableException extends MinimizUrlException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
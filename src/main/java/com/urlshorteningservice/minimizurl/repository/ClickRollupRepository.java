@@ -0,0 +1,8 @@
+package com.urlshorteningservice.minimizurl.repository;
+
+import com.urlshorteningservice.minimizurl.domain.ClickRollup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ClickRollupRepository extends MongoRepository<ClickRollup, String> {
+    void deleteByOwnerId(String userId); // Deletes the pre-aggregated analytics for those links
+}
@@ -0,0 +1,8 @@
+package com.urlshorteningservice.minimizurl.repository;
+
+import com.urlshorteningservice.minimizurl.domain.ReferrerSketch;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ReferrerSketchRepository extends MongoRepository<ReferrerSketch, Long> {
+    void deleteByOwnerId(String userId); // Deletes the heavy-hitter referrer summaries for those links
+}
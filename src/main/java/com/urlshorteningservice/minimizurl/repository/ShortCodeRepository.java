@@ -0,0 +1,8 @@
+package com.urlshorteningservice.minimizurl.repository;
+
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ShortCodeRepository extends MongoRepository<ShortCode, String> {
+    void deleteByUserId(String userId); // Releases every code owned by the user
+}
@@ -0,0 +1,8 @@
+package com.urlshorteningservice.minimizurl.repository;
+
+import com.urlshorteningservice.minimizurl.domain.VisitorSketch;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface VisitorSketchRepository extends MongoRepository<VisitorSketch, String> {
+    void deleteByOwnerId(String userId); // Deletes the unique-visitor sketches for those links
+}
@@ -0,0 +1,60 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * This node's key in the per-node sketch documents (visitor_sketches, referrer_sketches).
+ * Every new id adds an entry to each active link's documents, so the id must survive restarts:
+ * it is app.analytics.node-id when set, otherwise one generated once and kept in 'node-id-file'.
+ */
+@Component
+public class AnalyticsNodeId {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsNodeId.class);
+
+    private final String value;
+
+    public AnalyticsNodeId(@Value("${app.analytics.node-id:}") String configured,
+                           @Value("${app.analytics.node-id-file:./data/analytics-node-id}") Path file) {
+        this.value = configured.isBlank() ? persisted(file) : configured;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    private static String persisted(Path file) {
+        try {
+            if (Files.exists(file)) {
+                String stored = Files.readString(file, StandardCharsets.UTF_8).trim();
+                if (!stored.isEmpty()) {
+                    return stored;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read the analytics node id from {}: {}", file, e.getMessage());
+        }
+        String generated = UUID.randomUUID().toString().substring(0, 8);
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, generated, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Generated analytics node id {} (saved to {})", generated, file);
+        } catch (IOException e) {
+            log.warn("Could not save the analytics node id to {}; set app.analytics.node-id, or every restart "
+                    + "adds another entry to the sketch documents: {}", file, e.getMessage());
+        }
+        return generated;
+    }
+}
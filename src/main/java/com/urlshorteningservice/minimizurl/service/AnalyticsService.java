@@ -1,86 +1,373 @@
 package com.urlshorteningservice.minimizurl.service;
 
-import com.urlshorteningservice.minimizurl.domain.ClickEvent;
-import com.urlshorteningservice.minimizurl.repository.ClickEventRepository;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.ObjectOperators;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Service
-@RequiredArgsConstructor
 public class AnalyticsService {
 
+    /**
+     * How getFullAnalytics issues its four queries.
+     * SEQUENTIAL: one after another (latency is the sum).
+     * FACET: a single $facet aggregation, one scan of the link's documents and one round trip.
+     * PARALLEL: the four queries concurrently on a bounded pool (latency is the slowest one).
+     */
+    public enum QueryMode { SEQUENTIAL, FACET, PARALLEL }
+
     private final MongoTemplate mongoTemplate;
-    private ClickEventRepository clickEventRepository;
+    private final ClickEventStore clickEventStore;
+    private final UniqueVisitorCounter uniqueVisitorCounter;
+    private final ReferrerHeavyHitters referrerHeavyHitters;
+
+    // true: read the per-day click_rollups (O(days)); false: aggregate raw click_events (O(clicks))
+    private final boolean useRollups;
+    private final QueryMode queryMode;
+
+    // Only created in PARALLEL mode; when saturated the request thread runs the query itself
+    private final ThreadPoolExecutor executor;
+
+    public AnalyticsService(MongoTemplate mongoTemplate,
+                            ClickEventStore clickEventStore,
+                            UniqueVisitorCounter uniqueVisitorCounter,
+                            ReferrerHeavyHitters referrerHeavyHitters,
+                            @Value("${app.analytics.source:rollups}") String source,
+                            @Value("${app.analytics.query-mode:FACET}") QueryMode queryMode,
+                            @Value("${app.analytics.parallel.threads:8}") int threads,
+                            @Value("${app.analytics.parallel.queue-capacity:100}") int queueCapacity) {
+        this.mongoTemplate = mongoTemplate;
+        this.clickEventStore = clickEventStore;
+        this.uniqueVisitorCounter = uniqueVisitorCounter;
+        this.referrerHeavyHitters = referrerHeavyHitters;
+        this.useRollups = switch (source) {
+            case "rollups" -> true;
+            case "events" -> false;
+            default -> throw new IllegalArgumentException("Unknown app.analytics.source: " + source
+                    + " (expected rollups or events)");
+        };
+        this.queryMode = queryMode;
+        this.executor = queryMode == QueryMode.PARALLEL ? newExecutor(threads, queueCapacity) : null;
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "analytics-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    // Everything /fstats returns: summary, topReferrers, deviceBreakdown and dailyTrend
+    public Map<String, Object> getFullAnalytics(Long urlId) {
+        return switch (queryMode) {
+            case SEQUENTIAL -> assemble(getClickStats(urlId), getTopReferrers(urlId),
+                    getDeviceStats(urlId), getDailyClickTrend(urlId));
+            case FACET -> getFullAnalyticsFacet(urlId);
+            case PARALLEL -> getFullAnalyticsParallel(urlId);
+        };
+    }
+
+    private Map<String, Object> getFullAnalyticsParallel(Long urlId) {
+        CompletableFuture<Map<String, Object>> summary = supplyAsync(() -> getClickStats(urlId));
+        CompletableFuture<List<Map<String, Object>>> referrers = supplyAsync(() -> getTopReferrers(urlId));
+        CompletableFuture<List<Map<String, Object>>> devices = supplyAsync(() -> getDeviceStats(urlId));
+        CompletableFuture<List<Map<String, Object>>> trend = supplyAsync(() -> getDailyClickTrend(urlId));
+        try {
+            return assemble(summary.join(), referrers.join(), devices.join(), trend.join());
+        } catch (CompletionException e) {
+            // Surface the query's own exception, as the sequential path would
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, executor);
+    }
+
+    private static Map<String, Object> assemble(Map<String, Object> summary, List<Map<String, Object>> topReferrers,
+                                                List<Map<String, Object>> deviceBreakdown,
+                                                List<Map<String, Object>> dailyTrend) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("summary", summary);
+        response.put("topReferrers", topReferrers);
+        response.put("deviceBreakdown", deviceBreakdown);
+        response.put("dailyTrend", dailyTrend);
+        return response;
+    }
 
     public Map<String, Object> getClickStats(Long urlId) {
-        Query query = new Query(Criteria.where("urlId").is(urlId));
+        List<Map<String, Object>> totals = run(summaryQuery(urlId));
+        return withUniqueVisitors(urlId, toClickStats(totals.isEmpty() ? null : totals.get(0)));
+    }
 
-        long totalClicks = mongoTemplate.count(query, ClickEvent.class);
+    public List<Map<String, Object>> getTopReferrers(Long urlId) {
+        List<Map<String, Object>> referrers = run(referrersQuery(urlId));
+        return useRollups ? decodeReferrers(referrers) : referrers;
+    }
 
-        // Find the most recent click
-        query.with(Sort.by(Sort.Direction.DESC, "timestamp")).limit(1);
-        ClickEvent lastClick = mongoTemplate.findOne(query, ClickEvent.class);
+    /**
+     * Top referrers for the dedicated endpoint. By default answered from the link's Space-Saving
+     * summary in constant time; exact=true recounts from the configured source instead.
+     */
+    public List<Map<String, Object>> getTopReferrers(Long urlId, boolean exact, int limit) {
+        if (exact) {
+            List<Map<String, Object>> referrers = run(useRollups
+                    ? rollupQuery("topReferrers", urlId, rollupCounterStages("referrers", limit))
+                    : eventQuery("topReferrers", urlId, null, eventReferrerStages(limit)));
+            return useRollups ? decodeReferrers(referrers) : referrers;
+        }
+        return referrerHeavyHitters.topReferrers(urlId, limit);
+    }
 
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalClicks", totalClicks);
-        stats.put("lastClick", lastClick != null ? lastClick.getTimestamp() : null);
+    public List<Map<String, Object>> getDeviceStats(Long urlId) {
+        return run(devicesQuery(urlId));
+    }
 
-        return stats;
+    public List<Map<String, Object>> getDailyClickTrend(Long urlId) {
+        return run(trendQuery(urlId, sevenDaysAgo()));
+    }
+
+    private static Instant sevenDaysAgo() {
+        return Instant.now().minus(7, ChronoUnit.DAYS);
+    }
+
+    private List<Map<String, Object>> run(PlannedQuery query) {
+        return Collections.unmodifiableList(aggregate(query));
+    }
+
+    private List<Document> aggregate(PlannedQuery query) {
+        return mongoTemplate.aggregate(query.aggregation(), query.collection(), Document.class)
+                .getMappedResults();
+    }
+
+    private PlannedQuery summaryQuery(Long urlId) {
+        return useRollups
+                ? rollupQuery("summary", urlId, rollupSummaryStages())
+                : eventQuery("summary", urlId, null, eventSummaryStages());
+    }
+
+    private PlannedQuery referrersQuery(Long urlId) {
+        return useRollups
+                ? rollupQuery("topReferrers", urlId, rollupCounterStages("referrers", 5))
+                : eventQuery("topReferrers", urlId, null, eventReferrerStages());
+    }
+
+    private PlannedQuery devicesQuery(Long urlId) {
+        return useRollups
+                ? rollupQuery("deviceBreakdown", urlId, rollupCounterStages("devices", Integer.MAX_VALUE))
+                : eventQuery("deviceBreakdown", urlId, null, eventDeviceStages());
     }
 
-    public List<Map> getTopReferrers(Long urlId) {
-        Aggregation aggregation = Aggregation.newAggregation(
-                Aggregation.match(Criteria.where("urlId").is(urlId)),
+    private PlannedQuery trendQuery(Long urlId, Instant since) {
+        return useRollups
+                ? rollupQuery("dailyTrend", urlId, rollupTrendStages(since))
+                : eventQuery("dailyTrend", urlId, since, eventTrendStages(since));
+    }
+
+    private static PlannedQuery rollupQuery(String name, Long urlId, AggregationOperation... stages) {
+        List<AggregationOperation> pipeline = new ArrayList<>(stages.length + 1);
+        pipeline.add(Aggregation.match(Criteria.where("urlId").is(urlId)));
+        pipeline.addAll(Arrays.asList(stages));
+        return new PlannedQuery(name, "click_rollups", Aggregation.newAggregation(pipeline));
+    }
+
+    /**
+     * Reads the link's events from every month bucket that can hold them: the first bucket
+     * is the aggregation's collection, the others are appended with $unionWith, each with
+     * its own indexed $match. A non-null 'since' limits both the buckets and the match.
+     */
+    private PlannedQuery eventQuery(String name, Long urlId, Instant since, AggregationOperation... stages) {
+        Criteria criteria = Criteria.where("urlId").is(urlId);
+        if (since != null) {
+            criteria = criteria.and("timestamp").gte(since);
+        }
+        List<String> buckets = since != null ? clickEventStore.bucketsSince(since) : clickEventStore.allBuckets();
+
+        List<AggregationOperation> pipeline = new ArrayList<>(buckets.size() + stages.length);
+        pipeline.add(Aggregation.match(criteria));
+        for (String bucket : buckets.subList(1, buckets.size())) {
+            pipeline.add(UnionWithOperation.unionWith(bucket).pipeline(Aggregation.match(criteria)));
+        }
+        pipeline.addAll(Arrays.asList(stages));
+        return new PlannedQuery(name, buckets.get(0), Aggregation.newAggregation(pipeline));
+    }
+
+    /**
+     * Every aggregation the configured source and query mode issue for a link, so QueryPlanCheck
+     * can explain them at startup.
+     */
+    List<PlannedQuery> plannedQueries(Long urlId) {
+        if (queryMode == QueryMode.FACET) {
+            return List.of(facetQuery(urlId));
+        }
+        return List.of(summaryQuery(urlId), referrersQuery(urlId), devicesQuery(urlId),
+                trendQuery(urlId, sevenDaysAgo()));
+    }
+
+    record PlannedQuery(String name, String collection, Aggregation aggregation) {
+    }
+
+    // One pass over the link's documents, every section computed from it in a single round trip
+    private Map<String, Object> getFullAnalyticsFacet(Long urlId) {
+        List<Document> results = aggregate(facetQuery(urlId));
+        Document facets = results.isEmpty() ? new Document() : results.get(0);
+
+        List<Map<String, Object>> summary = facet(facets, "summary");
+        List<Map<String, Object>> referrers = facet(facets, "topReferrers");
+        return assemble(withUniqueVisitors(urlId, toClickStats(summary.isEmpty() ? null : summary.get(0))),
+                useRollups ? decodeReferrers(referrers) : referrers,
+                facet(facets, "deviceBreakdown"),
+                facet(facets, "dailyTrend"));
+    }
+
+    private static List<Map<String, Object>> facet(Document facets, String name) {
+        return Collections.unmodifiableList(facets.getList(name, Document.class, List.of()));
+    }
+
+    private PlannedQuery facetQuery(Long urlId) {
+        Instant since = sevenDaysAgo();
+        if (useRollups) {
+            return rollupQuery("fstats facet", urlId,
+                    Aggregation.facet(rollupSummaryStages()).as("summary")
+                            .and(rollupCounterStages("referrers", 5)).as("topReferrers")
+                            .and(rollupCounterStages("devices", Integer.MAX_VALUE)).as("deviceBreakdown")
+                            .and(rollupTrendStages(since)).as("dailyTrend"));
+        }
+        return eventQuery("fstats facet", urlId, null,
+                Aggregation.facet(eventSummaryStages()).as("summary")
+                        .and(eventReferrerStages()).as("topReferrers")
+                        .and(eventDeviceStages()).as("deviceBreakdown")
+                        .and(eventTrendStages(since)).as("dailyTrend"));
+    }
+
+    // --- Raw click events stages ---
+
+    private static AggregationOperation[] eventSummaryStages() {
+        return new AggregationOperation[]{
+                Aggregation.group().count().as("totalClicks").max("timestamp").as("lastClick")
+        };
+    }
+
+    private static AggregationOperation[] eventReferrerStages() {
+        return eventReferrerStages(5);
+    }
+
+    private static AggregationOperation[] eventReferrerStages(int limit) {
+        return new AggregationOperation[]{
                 // Stage: If referer is null, replace with "Direct"
                 Aggregation.project()
                         .and(ConditionalOperators.ifNull("referer").then("Direct")).as("referer"),
                 Aggregation.group("referer").count().as("count"),
                 Aggregation.sort(Sort.Direction.DESC, "count"),
-                Aggregation.limit(5)
-        );
-
-        return mongoTemplate.aggregate(aggregation, "click_events", Map.class)
-                .getMappedResults();
+                Aggregation.limit(limit)
+        };
     }
 
-    public List<Map> getDeviceStats(Long urlId) {
-        Aggregation aggregation = Aggregation.newAggregation(
-                Aggregation.match(Criteria.where("urlId").is(urlId)),
+    private static AggregationOperation[] eventDeviceStages() {
+        return new AggregationOperation[]{
                 Aggregation.project()
                         .andExpression("cond(indexOfCP(userAgent, 'Mobi') >= 0, 'Mobile', 'Desktop')")
                         .as("deviceType"),
                 Aggregation.group("deviceType").count().as("count")
-        );
-
-        return mongoTemplate.aggregate(aggregation, "click_events", Map.class)
-                .getMappedResults();
+        };
     }
 
-    public List<Map> getDailyClickTrend(Long urlId) {
-        // 1. Calculate the date 7 days ago
-        Instant sevenDaysAgo = Instant.now().minus(7, ChronoUnit.DAYS);
-
-        Aggregation aggregation = Aggregation.newAggregation(
-                Aggregation.match(Criteria.where("urlId").is(urlId)
-                        .and("timestamp").gte(sevenDaysAgo)),
+    private static AggregationOperation[] eventTrendStages(Instant since) {
+        return new AggregationOperation[]{
+                Aggregation.match(Criteria.where("timestamp").gte(since)),
                 // Extracting just the date (YYYY-MM-DD) from the timestamp
                 Aggregation.project()
                         .and("timestamp").dateAsFormattedString("%Y-%m-%d").as("date"),
                 Aggregation.group("date").count().as("count"),
                 Aggregation.sort(Sort.Direction.ASC, "_id") // Sort by date
-        );
+        };
+    }
 
-        return mongoTemplate.aggregate(aggregation, "click_events", Map.class)
-                .getMappedResults();
+    // --- Rollup-backed stages: same response shapes as the raw-event aggregations above ---
+
+    private static AggregationOperation[] rollupSummaryStages() {
+        return new AggregationOperation[]{
+                Aggregation.group().sum("total").as("totalClicks").max("lastClick").as("lastClick")
+        };
+    }
+
+    // Sums one counter map (referrers or devices) across every day of the link, largest first
+    private static AggregationOperation[] rollupCounterStages(String field, int limit) {
+        return new AggregationOperation[]{
+                Aggregation.project().and(ObjectOperators.valueOf(field).toArray()).as("entries"),
+                Aggregation.unwind("entries"),
+                Aggregation.group("entries.k").sum("entries.v").as("count"),
+                Aggregation.sort(Sort.Direction.DESC, "count"),
+                Aggregation.limit(limit)
+        };
+    }
+
+    // Whole UTC days: the day containing 'since' is included in full
+    private static AggregationOperation[] rollupTrendStages(Instant since) {
+        return new AggregationOperation[]{
+                Aggregation.match(Criteria.where("day").gte(ClickRollupService.dayOf(since))),
+                Aggregation.group("day").sum("total").as("count"),
+                Aggregation.sort(Sort.Direction.ASC, "_id")
+        };
+    }
+
+    private static List<Map<String, Object>> decodeReferrers(List<Map<String, Object>> referrers) {
+        for (Map<String, Object> referrer : referrers) {
+            referrer.put("_id", ClickRollupService.decodeKey((String) referrer.get("_id")));
+        }
+        return referrers;
+    }
+
+    // HyperLogLog estimates (about 2.3% standard error), not part of either query source
+    private Map<String, Object> withUniqueVisitors(Long urlId, Map<String, Object> stats) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        stats.put("uniqueVisitors", uniqueVisitorCounter.uniqueVisitors(urlId));
+        stats.put("uniqueVisitorsLast7Days", uniqueVisitorCounter.uniqueVisitors(urlId, today.minusDays(6), today));
+        return stats;
+    }
+
+    // Normalises a {totalClicks, lastClick} group result to the summary shape of getClickStats
+    private static Map<String, Object> toClickStats(Map<String, Object> totals) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalClicks", totals != null ? ((Number) totals.get("totalClicks")).longValue() : 0L);
+        Object lastClick = totals != null ? totals.get("lastClick") : null;
+        stats.put("lastClick", lastClick instanceof Date date ? date.toInstant() : null);
+        return stats;
     }
 }
@@ -7,9 +7,12 @@ import com.urlshorteningservice.minimizurl.exception.DuplicateUsernameException;
 import com.urlshorteningservice.minimizurl.exception.InvalidLoginException;
 import com.urlshorteningservice.minimizurl.exception.InvalidTokenException;
 import com.urlshorteningservice.minimizurl.exception.UserNotFoundException;
-import com.urlshorteningservice.minimizurl.repository.ClickEventRepository;
+import com.urlshorteningservice.minimizurl.repository.ClickRollupRepository;
+import com.urlshorteningservice.minimizurl.repository.ReferrerSketchRepository;
+import com.urlshorteningservice.minimizurl.repository.ShortCodeRepository;
 import com.urlshorteningservice.minimizurl.repository.UrlMappingRepository;
 import com.urlshorteningservice.minimizurl.repository.UserRepository;
+import com.urlshorteningservice.minimizurl.repository.VisitorSketchRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -27,7 +30,14 @@ public class AuthService {
     private final JwtUtils jwtUtils;
     private final EmailService emailService;
     private final UrlMappingRepository urlMappingRepository;
-    private final ClickEventRepository clickEventRepository;
+    private final ShortCodeRepository shortCodeRepository;
+    private final ClickEventStore clickEventStore;
+    private final ClickRollupRepository clickRollupRepository;
+    private final VisitorSketchRepository visitorSketchRepository;
+    private final ReferrerSketchRepository referrerSketchRepository;
+    private final UrlMappingCache urlMappingCache;
+    private final RedirectTable redirectTable;
+    private final RevokedUserCache revokedUserCache;
 
     public User register(RegisterRequest request) {
         String hashedPw = passwordEncoder.encode(request.getPassword());
@@ -52,7 +62,7 @@ public class AuthService {
         if (!passwordEncoder.matches(password, user.getPassword())) {
             throw new InvalidLoginException();
         }
-        return jwtUtils.generateToken(user.getId());
+        return jwtUtils.generateToken(user.getId(), user.getRoles());
     }
 
     public void processForgotPassword(String email) {
@@ -106,12 +116,21 @@ public class AuthService {
         }
 
         // 2. Cascade Delete: Analytics
-        clickEventRepository.deleteByOwnerId(userId);
+        clickEventStore.deleteByOwnerId(userId);
+        clickRollupRepository.deleteByOwnerId(userId);
+        visitorSketchRepository.deleteByOwnerId(userId);
+        referrerSketchRepository.deleteByOwnerId(userId);
 
         // 3. Cascade Delete: URL Mappings
         urlMappingRepository.deleteByUserId(userId);
+        shortCodeRepository.deleteByUserId(userId);
+        urlMappingCache.invalidateOwnedBy(userId);
+        redirectTable.removeOwnedBy(userId);
 
         // 4. Delete the User record
         userRepository.deleteById(userId);
+
+        // 5. Outstanding tokens carry their own roles; refuse them from now on
+        revokedUserCache.revoke(userId);
     }
 }
\ No newline at end of file
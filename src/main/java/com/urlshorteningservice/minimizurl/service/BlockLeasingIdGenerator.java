@@ -0,0 +1,116 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Hands out ids from locally leased ranges [start, end], each reserved with a single $inc.
+ * The next range is leased in the background once the current one runs low.
+ * Ids left in a range when the node stops are abandoned, leaving gaps but never duplicates.
+ */
+public class BlockLeasingIdGenerator implements IdGenerator {
+
+    private final ToLongBiFunction<String, Integer> incrementSequence;
+    private final int blockSize;
+    private final long prefetchAt;
+
+    private final ConcurrentHashMap<String, IdBlockLease> leases = new ConcurrentHashMap<>();
+
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "id-block-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // incrementSequence atomically adds 'count' to the named counter and returns the new value
+    public BlockLeasingIdGenerator(ToLongBiFunction<String, Integer> incrementSequence,
+                                   int blockSize, double prefetchThreshold) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("app.id.block.size must be positive");
+        }
+        // At 1 or above the remaining count never equals prefetchAt, so every lease would be synchronous
+        if (!(prefetchThreshold >= 0 && prefetchThreshold < 1)) {
+            throw new IllegalArgumentException("app.id.block.prefetch-threshold must be at least 0 and below 1");
+        }
+        this.incrementSequence = incrementSequence;
+        this.blockSize = blockSize;
+        this.prefetchAt = (long) (blockSize * prefetchThreshold);
+    }
+
+    @Override
+    public long nextId(String sequenceName) {
+        return leases.computeIfAbsent(sequenceName, IdBlockLease::new).nextId();
+    }
+
+    // Bulk requests lease their own exact-size range, leaving the shared block untouched
+    @Override
+    public long[] nextIds(String sequenceName, int count) {
+        if (count == 0) {
+            return new long[0];
+        }
+        return IdGenerator.rangeEndingAt(incrementSequence.applyAsLong(sequenceName, count), count);
+    }
+
+    private record IdRange(AtomicLong cursor, long end) {
+        static IdRange empty() {
+            return new IdRange(new AtomicLong(1), 0);
+        }
+    }
+
+    private final class IdBlockLease {
+
+        private final String sequenceName;
+        private volatile IdRange current = IdRange.empty();
+        private CompletableFuture<IdRange> next;
+
+        IdBlockLease(String sequenceName) {
+            this.sequenceName = sequenceName;
+        }
+
+        long nextId() {
+            while (true) {
+                IdRange range = current;
+                long id = range.cursor().getAndIncrement();
+                if (id <= range.end()) {
+                    if (range.end() - id == prefetchAt) {
+                        prefetch();
+                    }
+                    return id;
+                }
+                advance(range);
+            }
+        }
+
+        private synchronized void prefetch() {
+            if (next == null) {
+                next = CompletableFuture.supplyAsync(this::lease, prefetcher);
+            }
+        }
+
+        private synchronized void advance(IdRange exhausted) {
+            if (current != exhausted) {
+                return; // Another thread already swapped in a fresh range
+            }
+            IdRange fresh = null;
+            if (next != null) {
+                try {
+                    fresh = next.join();
+                } catch (CompletionException e) {
+                    // Prefetch failed; lease synchronously below
+                }
+                next = null;
+            }
+            current = (fresh != null) ? fresh : lease();
+        }
+
+        private IdRange lease() {
+            long end = incrementSequence.applyAsLong(sequenceName, blockSize);
+            return new IdRange(new AtomicLong(end - blockSize + 1), end);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings and longs.
+ * A negative answer from mightContain is exact; a positive one is wrong with
+ * probability close to the false-positive rate the filter was sized for.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    private BloomFilter(long bitCount, int hashCount) {
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.words = new AtomicLongArray((int) ((bitCount + 63) >>> 6));
+    }
+
+    /**
+     * Sizes the filter for the given load and false-positive rate, never exceeding maxBytes.
+     * When the budget caps the size, the effective rate is worse; see expectedFalsePositiveRate().
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate, long maxBytes) {
+        long n = Math.max(1, expectedInsertions);
+        long optimalBits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long maxBits = Math.min(maxBytes * 8, (long) Integer.MAX_VALUE * 64);
+        long bits = Math.max(64, Math.min(optimalBits, maxBits));
+        int hashes = (int) Math.max(1, Math.round((double) bits / n * Math.log(2)));
+        return new BloomFilter(bits, Math.min(hashes, 16));
+    }
+
+    public void put(String key) {
+        setBits(hash64(key));
+    }
+
+    public void put(long key) {
+        setBits(mix64(key));
+    }
+
+    public boolean mightContain(String key) {
+        return testBits(hash64(key));
+    }
+
+    public boolean mightContain(long key) {
+        return testBits(mix64(key));
+    }
+
+    public long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    public double expectedFalsePositiveRate(long insertions) {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount), hashCount);
+    }
+
+    // Kirsch-Mitzenmacher double hashing: k bit indexes derived from one 64-bit hash
+    private void setBits(long hash) {
+        long h2 = mix64(hash ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash + i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.weakCompareAndSetVolatile(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    private boolean testBits(long hash) {
+        long h2 = mix64(hash ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a over UTF-16 code units, finished with the murmur3 avalanche step
+    static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
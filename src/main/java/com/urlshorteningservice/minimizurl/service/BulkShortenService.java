@@ -0,0 +1,113 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenRequest;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a bulk shorten request through UrlService in fixed-size chunks.
+ * Items are read incrementally (a JSON array or NDJSON, one object per line), so neither the
+ * request nor the response is ever held in memory; each chunk's results are written as NDJSON
+ * lines and flushed before the next chunk is read.
+ */
+@Service
+public class BulkShortenService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkShortenService.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final UrlService urlService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader itemReader;
+    private final MeterRegistry meterRegistry;
+    private final int chunkSize;
+    private final long maxItems;
+
+    public BulkShortenService(UrlService urlService,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.bulk.chunk-size:1000}") int chunkSize,
+                              @Value("${app.bulk.max-items:100000}") long maxItems) {
+        this.urlService = urlService;
+        this.objectMapper = objectMapper;
+        this.itemReader = objectMapper.readerFor(BulkShortenRequest.class);
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+        this.maxItems = maxItems;
+    }
+
+    public void shorten(InputStream in, OutputStream out, String userId) throws IOException {
+        List<BulkShortenRequest> chunk = new ArrayList<>(chunkSize);
+        long index = 0;
+        BulkShortenResult abort = null;
+
+        // A root-level array is unwrapped; otherwise whitespace-separated objects (NDJSON) are read
+        try (MappingIterator<BulkShortenRequest> items = itemReader.readValues(in)) {
+            while (true) {
+                BulkShortenRequest item;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    item = items.nextValue();
+                } catch (IOException e) {
+                    log.debug("Malformed bulk item at index {}: {}", index, e.getMessage());
+                    abort = failure(index, BulkShortenResult.INVALID, "malformed item, request aborted");
+                    break;
+                }
+                if (index >= maxItems) {
+                    abort = failure(index, BulkShortenResult.INVALID, "request exceeds " + maxItems + " items");
+                    break;
+                }
+                chunk.add(item);
+                index++;
+                if (chunk.size() == chunkSize) {
+                    flushChunk(chunk, index, out, userId);
+                }
+            }
+        }
+
+        // Items parsed before the abort are still shortened, and reported ahead of it so indexes stay in order
+        if (!chunk.isEmpty()) {
+            flushChunk(chunk, index, out, userId);
+        }
+        if (abort != null) {
+            write(out, abort);
+        }
+        out.flush();
+    }
+
+    private void flushChunk(List<BulkShortenRequest> chunk, long endIndex, OutputStream out, String userId)
+            throws IOException {
+        List<BulkShortenResult> results = urlService.shortenBatch(chunk, endIndex - chunk.size(), userId);
+        for (BulkShortenResult result : results) {
+            meterRegistry.counter("links.bulk.items", "status", result.getStatus()).increment();
+            write(out, result);
+        }
+        out.flush();
+        chunk.clear();
+    }
+
+    private void write(OutputStream out, BulkShortenResult result) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(result));
+        out.write(NEWLINE);
+    }
+
+    private static BulkShortenResult failure(long index, String status, String error) {
+        return BulkShortenResult.builder().index(index).status(status).error(error).build();
+    }
+}
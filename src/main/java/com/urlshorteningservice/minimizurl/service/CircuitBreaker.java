@@ -0,0 +1,165 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Count-based circuit breaker that trips on latency as well as on errors.
+ * The outcome of the last window-size calls is kept in a ring; a call is "bad" when it throws
+ * or takes longer than the slow-call threshold. Once at least min-calls are recorded and the
+ * bad share reaches the failure-rate threshold, the breaker opens and rejects calls with
+ * ServiceUnavailableException for open-duration. It then lets probe-calls through (half-open):
+ * all of them good closes it again, any bad one re-opens it.
+ * Slow calls are not interrupted; bounding them is the job of the client timeouts.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String name;
+    private final long slowCallNanos;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int probeCalls;
+    private final LongSupplier clock;
+
+    // Guarded by 'this'
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int badCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesLeft;
+    private int probesSucceeded;
+
+    private final Counter rejected;
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold,
+                          Duration slowCallThreshold, Duration openDuration, int probeCalls,
+                          MeterRegistry meterRegistry) {
+        this(name, windowSize, minCalls, failureRateThreshold, slowCallThreshold, openDuration, probeCalls,
+                meterRegistry, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold,
+                   Duration slowCallThreshold, Duration openDuration, int probeCalls,
+                   MeterRegistry meterRegistry, LongSupplier clock) {
+        this.name = name;
+        this.outcomes = new boolean[windowSize];
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.probeCalls = probeCalls;
+        this.clock = clock;
+        this.rejected = Counter.builder(name + ".circuit.rejected")
+                .description("Calls refused while the circuit was open")
+                .register(meterRegistry);
+        meterRegistry.gauge(name + ".circuit.state", this, breaker -> breaker.state().ordinal());
+    }
+
+    public <T> T call(Supplier<T> action) {
+        if (!tryAcquire()) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Database temporarily unavailable");
+        }
+        long start = clock.getAsLong();
+        try {
+            T result = action.get();
+            record(clock.getAsLong() - start > slowCallNanos);
+            return result;
+        } catch (RuntimeException | Error e) {
+            record(true);
+            throw e;
+        }
+    }
+
+    // True while calls are being refused; lets background writers defer instead of piling on
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && clock.getAsLong() - openedAt < openNanos;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+            probesLeft = probeCalls;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesLeft == 0) {
+                return false;
+            }
+            probesLeft--;
+        }
+        return true;
+    }
+
+    private synchronized void record(boolean bad) {
+        if (state == State.HALF_OPEN) {
+            if (bad) {
+                open();
+            } else if (++probesSucceeded >= probeCalls) {
+                reset();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return; // Completed after the breaker opened; already accounted for
+        }
+
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                badCalls--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = bad;
+        if (bad) {
+            badCalls++;
+        }
+        next = (next + 1) % outcomes.length;
+
+        if (recorded >= minCalls && badCalls >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = clock.getAsLong();
+        reset();
+        transition(State.OPEN);
+    }
+
+    private void reset() {
+        next = 0;
+        recorded = 0;
+        badCalls = 0;
+    }
+
+    private void transition(State target) {
+        if (state != target) {
+            log.warn("Circuit breaker '{}' {} -> {}", name, state, target);
+            state = target;
+        }
+    }
+}
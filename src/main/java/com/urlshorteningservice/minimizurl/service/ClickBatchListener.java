@@ -0,0 +1,15 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+
+import java.util.List;
+
+/**
+ * Notified by ClickEventPipeline after a batch of events has been persisted.
+ * Runs on the pipeline's consumer thread, so implementations should be quick and must not
+ * keep a reference to the list, which is reused for the next batch.
+ */
+public interface ClickBatchListener {
+
+    void onBatch(List<ClickEvent> batch);
+}
@@ -0,0 +1,243 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for per-link click counts and sliding expiry.
+ * Redirect threads only touch striped in-memory counters; a scheduler folds the
+ * accumulated deltas into url_mappings as one unordered bulk write, so a viral
+ * link costs one document update per flush instead of one per click.
+ */
+@Component
+public class ClickCounterBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickCounterBuffer.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ShortCodeIndex shortCodeIndex;
+    private final CircuitBreaker mongoCircuitBreaker;
+    private final long maxStalenessNanos;
+    private final int maxPending;
+
+    private final ConcurrentHashMap<Long, PendingClicks> pending = new ConcurrentHashMap<>();
+    // Counters unlinked by a flush; drained on every flush until no click can still be landing in them
+    private List<Map.Entry<Long, PendingClicks>> retired = new ArrayList<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile long lastFlushNanos = System.nanoTime();
+
+    private final Counter flushedClicks;
+    private final Counter failedFlushes;
+
+    public ClickCounterBuffer(MongoTemplate mongoTemplate,
+                              ShortCodeIndex shortCodeIndex,
+                              CircuitBreaker mongoCircuitBreaker,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.clicks.max-staleness:5s}") Duration maxStaleness,
+                              @Value("${app.clicks.max-pending:10000}") int maxPending) {
+        this.mongoTemplate = mongoTemplate;
+        this.shortCodeIndex = shortCodeIndex;
+        this.mongoCircuitBreaker = mongoCircuitBreaker;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.maxPending = maxPending;
+        this.flushedClicks = Counter.builder("clicks.buffer.flushed")
+                .description("Clicks written to url_mappings by the write-behind buffer")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("clicks.buffer.flush.failures")
+                .register(meterRegistry);
+        meterRegistry.gauge("clicks.buffer.pending", pending, Map::size);
+    }
+
+    public void recordClick(long urlId, Instant newExpiry) {
+        add(urlId, 1, newExpiry.toEpochMilli());
+    }
+
+    private void add(long urlId, long count, long expiryMillis) {
+        while (true) {
+            PendingClicks counter = pending.get(urlId);
+            if (counter == null) {
+                counter = pending.computeIfAbsent(urlId, id -> new PendingClicks());
+            }
+            // Fails only for a counter a flush unlinked after this thread looked it up; the map has moved on
+            if (counter.add(count, expiryMillis)) {
+                return;
+            }
+        }
+    }
+
+    // Wakes every flush-interval; writes once the oldest delta may be max-staleness old or the buffer is full
+    @Scheduled(fixedDelayString = "${app.clicks.flush-interval:1s}")
+    public void flushIfDue() {
+        // While the database is in distress, counters keep accumulating in memory and are written later
+        if (mongoCircuitBreaker.isOpen()) {
+            return;
+        }
+        if (System.nanoTime() - lastFlushNanos >= maxStalenessNanos || pending.size() >= maxPending) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            lastFlushNanos = System.nanoTime();
+            Map<Long, Delta> batch = new HashMap<>();
+
+            List<Map.Entry<Long, PendingClicks>> retiring = new ArrayList<>();
+            for (Map.Entry<Long, PendingClicks> entry : retired) {
+                // Checked before the drain: once quiet, this drain is the counter's last
+                boolean quiet = entry.getValue().isQuiet();
+                entry.getValue().drainInto(entry.getKey(), batch);
+                if (!quiet) {
+                    retiring.add(entry);
+                }
+            }
+            for (Map.Entry<Long, PendingClicks> entry : pending.entrySet()) {
+                if (!entry.getValue().drainInto(entry.getKey(), batch)
+                        && pending.remove(entry.getKey(), entry.getValue())) {
+                    entry.getValue().retire();
+                    retiring.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            }
+            retired = retiring;
+
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void drainOnShutdown() {
+        flush();
+        // A second pass picks up counters retired by the first one
+        flush();
+    }
+
+    private void write(Map<Long, Delta> batch) {
+        List<Map.Entry<Long, Delta>> ordered = new ArrayList<>(batch.entrySet());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UrlMapping.class);
+        for (Map.Entry<Long, Delta> entry : ordered) {
+            Delta delta = entry.getValue();
+            Update update = new Update().inc("clicks", delta.clicks());
+            if (delta.expiryMillis() != Long.MIN_VALUE) {
+                update.max("expirationDate", Instant.ofEpochMilli(delta.expiryMillis()));
+            }
+            bulk.updateOne(new Query(Criteria.where("_id").is(entry.getKey())), update);
+        }
+
+        try {
+            bulk.execute();
+            flushedClicks.increment(batch.values().stream().mapToLong(Delta::clicks).sum());
+            extendCodeExpiry(ordered);
+        } catch (BulkOperationException e) {
+            // Unordered: only the failed updates need to be retried
+            failedFlushes.increment();
+            for (BulkWriteError error : e.getErrors()) {
+                Map.Entry<Long, Delta> failed = ordered.get(error.getIndex());
+                requeue(failed.getKey(), failed.getValue());
+            }
+            log.warn("Click flush partially failed ({} of {} updates)", e.getErrors().size(), ordered.size());
+        } catch (Exception e) {
+            failedFlushes.increment();
+            ordered.forEach(entry -> requeue(entry.getKey(), entry.getValue()));
+            log.warn("Click flush failed, {} deltas re-queued: {}", ordered.size(), e.getMessage());
+        }
+    }
+
+    // short_codes carries its own TTL copy of the expiry; a missed extension is repaired by the next click
+    private void extendCodeExpiry(List<Map.Entry<Long, Delta>> written) {
+        Map<Long, Instant> expiries = new HashMap<>();
+        for (Map.Entry<Long, Delta> entry : written) {
+            if (entry.getValue().expiryMillis() != Long.MIN_VALUE) {
+                expiries.put(entry.getKey(), Instant.ofEpochMilli(entry.getValue().expiryMillis()));
+            }
+        }
+        try {
+            shortCodeIndex.extendExpiry(expiries);
+        } catch (Exception e) {
+            log.warn("Short code expiry update failed for {} links: {}", expiries.size(), e.getMessage());
+        }
+    }
+
+    private void requeue(long urlId, Delta delta) {
+        add(urlId, delta.clicks(), delta.expiryMillis());
+    }
+
+    private record Delta(long clicks, long expiryMillis) {
+        Delta merge(Delta other) {
+            return new Delta(clicks + other.clicks, Math.max(expiryMillis, other.expiryMillis));
+        }
+    }
+
+    private static final class PendingClicks {
+        private final LongAdder clicks = new LongAdder();
+        private final LongAccumulator expiryMillis = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        // Adds in progress; striped like the counters so the redirect path stays contention-free
+        private final LongAdder adding = new LongAdder();
+        private volatile boolean retired;
+
+        // False once retired: the caller looked this counter up before a flush unlinked it
+        boolean add(long count, long expiry) {
+            adding.increment();
+            try {
+                if (retired) {
+                    return false;
+                }
+                clicks.add(count);
+                expiryMillis.accumulate(expiry);
+                return true;
+            } finally {
+                adding.decrement();
+            }
+        }
+
+        // Called after the counter was unlinked from the map, so new lookups no longer find it
+        void retire() {
+            retired = true;
+        }
+
+        // An add that has not announced itself by now will see 'retired' and go elsewhere
+        boolean isQuiet() {
+            return retired && adding.sum() == 0;
+        }
+
+        // Returns false when nothing was pending, i.e. the link was idle for a whole interval
+        boolean drainInto(long urlId, Map<Long, Delta> batch) {
+            long count = clicks.sumThenReset();
+            long expiry = expiryMillis.getThenReset();
+            if (count == 0) {
+                return false;
+            }
+            batch.merge(urlId, new Delta(count, expiry), Delta::merge);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves ClickEvent persistence off the redirect thread.
+ * Redirects enqueue into a bounded lock-free queue; a single consumer drains it
+ * into batched inserts, flushing when a batch is full or its first event has
+ * waited for the linger time. When the queue is full the overflow policy decides
+ * whether the event is dropped (and counted) or the caller waits for space.
+ * Every persisted batch is then handed to the registered ClickBatchListeners.
+ * Draining pauses while the Mongo circuit breaker is open.
+ */
+@Component
+public class ClickEventPipeline implements SmartLifecycle {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static final Logger log = LoggerFactory.getLogger(ClickEventPipeline.class);
+    private static final long BLOCK_BACKOFF_NANOS = 50_000;
+
+    private final ClickEventStore clickEventStore;
+    private final CircuitBreaker mongoCircuitBreaker;
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final Duration drainTimeout;
+    private final List<ClickBatchListener> listeners;
+
+    private final ConcurrentLinkedQueue<ClickEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final Counter enqueued;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private volatile Thread consumer;
+
+    public ClickEventPipeline(ClickEventStore clickEventStore,
+                              CircuitBreaker mongoCircuitBreaker,
+                              MeterRegistry meterRegistry,
+                              List<ClickBatchListener> listeners,
+                              @Value("${app.clicks.events.capacity:50000}") int capacity,
+                              @Value("${app.clicks.events.batch-size:500}") int batchSize,
+                              @Value("${app.clicks.events.linger:200ms}") Duration linger,
+                              @Value("${app.clicks.events.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                              @Value("${app.clicks.events.block-timeout:100ms}") Duration blockTimeout,
+                              @Value("${app.clicks.events.drain-timeout:10s}") Duration drainTimeout) {
+        this.clickEventStore = clickEventStore;
+        this.mongoCircuitBreaker = mongoCircuitBreaker;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.drainTimeout = drainTimeout;
+        this.listeners = List.copyOf(listeners);
+
+        this.enqueued = Counter.builder("clicks.events.enqueued").register(meterRegistry);
+        this.dropped = Counter.builder("clicks.events.dropped")
+                .description("Click events discarded because the ingestion queue was full")
+                .register(meterRegistry);
+        this.written = Counter.builder("clicks.events.written").register(meterRegistry);
+        this.failed = Counter.builder("clicks.events.failed").register(meterRegistry);
+        meterRegistry.gauge("clicks.events.queue.depth", depth);
+    }
+
+    // Returns false if the event was dropped by the overflow policy
+    public boolean submit(ClickEvent event) {
+        if (!reserveSlot()) {
+            dropped.increment();
+            return false;
+        }
+        queue.offer(event);
+        enqueued.increment();
+
+        Thread drainer = consumer;
+        if (drainer != null && depth.get() >= batchSize) {
+            LockSupport.unpark(drainer);
+        }
+        return true;
+    }
+
+    private boolean reserveSlot() {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (true) {
+            int current = depth.get();
+            if (current < capacity) {
+                if (depth.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                continue;
+            }
+            if (overflowPolicy == OverflowPolicy.DROP || !running || System.nanoTime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_BACKOFF_NANOS);
+        }
+    }
+
+    private void drainLoop() {
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (true) {
+            // Database in distress: leave events queued (the overflow policy applies once full)
+            if (running && mongoCircuitBreaker.isOpen()) {
+                LockSupport.parkNanos(lingerNanos);
+                continue;
+            }
+            ClickEvent event = queue.poll();
+            if (event != null) {
+                depth.decrementAndGet();
+                if (batch.isEmpty()) {
+                    deadline = System.nanoTime() + lingerNanos;
+                }
+                batch.add(event);
+                if (batch.size() >= batchSize) {
+                    write(batch);
+                }
+                continue;
+            }
+
+            if (!batch.isEmpty() && (!running || System.nanoTime() >= deadline)) {
+                write(batch);
+                continue;
+            }
+            if (!running) {
+                return; // Queue is empty and nothing is pending
+            }
+            LockSupport.parkNanos(batch.isEmpty() ? lingerNanos : deadline - System.nanoTime());
+        }
+    }
+
+    private void write(List<ClickEvent> batch) {
+        try {
+            clickEventStore.insert(batch);
+            written.increment(batch.size());
+            notifyListeners(batch);
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            log.warn("Failed to persist {} click events: {}", batch.size(), e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    // Only persisted events are published, so derived data never counts a click the raw log lacks
+    private void notifyListeners(List<ClickEvent> batch) {
+        for (ClickBatchListener listener : listeners) {
+            try {
+                listener.onBatch(batch);
+            } catch (Exception e) {
+                log.warn("Click batch listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::drainLoop, "click-event-pipeline");
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+    }
+
+    // Stops after the web server (lower phase), then drains whatever is still queued
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = consumer;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Click event pipeline did not drain within {}; {} events abandoned", drainTimeout, depth.get());
+        }
+        consumer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
@@ -0,0 +1,189 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Month-partitioned storage for ClickEvent: events live in click_events_yyyy_MM by their
+ * UTC timestamp. Readers ask for the buckets covering a time window, so the 7-day trend
+ * touches at most two collections however long a link has existed, and retention drops
+ * whole expired months instead of deleting events one by one.
+ * The unpartitioned click_events collection written before bucketing is still read while it
+ * exists; the cleanup job drops it once it holds no event inside the retention period.
+ */
+@Component
+public class ClickEventStore {
+
+    static final String LEGACY_COLLECTION = "click_events";
+    private static final String BUCKET_PREFIX = LEGACY_COLLECTION + "_";
+    private static final Pattern BUCKET_NAME = Pattern.compile(Pattern.quote(BUCKET_PREFIX) + "(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    // How long a listCollectionNames snapshot is trusted before buckets created elsewhere are picked up
+    private static final Duration KNOWN_BUCKETS_TTL = Duration.ofMinutes(1);
+
+    private static final Logger log = LoggerFactory.getLogger(ClickEventStore.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration retention;
+
+    private final Set<String> indexedBuckets = ConcurrentHashMap.newKeySet();
+
+    private volatile KnownBuckets knownBuckets;
+
+    public ClickEventStore(MongoTemplate mongoTemplate,
+                           @Value("${app.clicks.events.retention:400d}") Duration retention) {
+        this.mongoTemplate = mongoTemplate;
+        this.retention = retention;
+    }
+
+    public void insert(List<ClickEvent> batch) {
+        // A batch normally falls in one month; around midnight on the 1st it may span two
+        Map<String, List<ClickEvent>> byBucket = new HashMap<>(2);
+        for (ClickEvent event : batch) {
+            byBucket.computeIfAbsent(bucketFor(event.getTimestamp()), name -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<String, List<ClickEvent>> entry : byBucket.entrySet()) {
+            ensureIndexes(entry.getKey());
+            mongoTemplate.insert(entry.getValue(), entry.getKey());
+        }
+    }
+
+    static String bucketFor(Instant timestamp) {
+        return bucketFor(YearMonth.from(timestamp.atZone(ZoneOffset.UTC)));
+    }
+
+    static String bucketFor(YearMonth month) {
+        return BUCKET_PREFIX + month.format(BUCKET_FORMAT);
+    }
+
+    // Buckets that can hold events in [from, now]; months without a collection simply match nothing
+    public List<String> bucketsSince(Instant from) {
+        List<String> buckets = new ArrayList<>();
+        if (known().legacyExists) {
+            buckets.add(LEGACY_COLLECTION);
+        }
+        YearMonth month = YearMonth.from(from.atZone(ZoneOffset.UTC));
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (; !month.isAfter(current); month = month.plusMonths(1)) {
+            buckets.add(bucketFor(month));
+        }
+        return buckets;
+    }
+
+    // Every bucket that exists, plus the current month (it may have been created by another node)
+    public List<String> allBuckets() {
+        KnownBuckets known = known();
+        Set<String> buckets = new TreeSet<>(known.months.keySet());
+        buckets.add(bucketFor(YearMonth.now(ZoneOffset.UTC)));
+        List<String> all = new ArrayList<>(buckets.size() + 1);
+        if (known.legacyExists) {
+            all.add(LEGACY_COLLECTION);
+        }
+        all.addAll(buckets);
+        return all;
+    }
+
+    public long deleteByOwnerId(String ownerId) {
+        long deleted = 0;
+        for (String bucket : allBuckets()) {
+            deleted += mongoTemplate.remove(new Query(Criteria.where("ownerId").is(ownerId)), bucket)
+                    .getDeletedCount();
+        }
+        return deleted;
+    }
+
+    // A month is dropped once its last instant is older than the retention period
+    @Scheduled(fixedDelayString = "${app.clicks.events.bucket-cleanup-interval:6h}",
+            initialDelayString = "${app.clicks.events.bucket-cleanup-interval:6h}")
+    public void dropExpiredBuckets() {
+        Instant horizon = Instant.now().minus(retention);
+        for (Map.Entry<String, YearMonth> bucket : refreshKnownBuckets().months.entrySet()) {
+            Instant monthEnd = bucket.getValue().plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            if (!monthEnd.isAfter(horizon)) {
+                mongoTemplate.dropCollection(bucket.getKey());
+                indexedBuckets.remove(bucket.getKey());
+                log.info("Dropped expired click event bucket {}", bucket.getKey());
+            }
+        }
+        dropLegacyIfExpired(horizon);
+        knownBuckets = null;
+    }
+
+    // The legacy collection has no month to go by: it goes once nothing in it is retained
+    private void dropLegacyIfExpired(Instant horizon) {
+        if (!known().legacyExists) {
+            return;
+        }
+        Query retained = new Query(Criteria.where("timestamp").gt(horizon));
+        if (!mongoTemplate.exists(retained, LEGACY_COLLECTION)) {
+            mongoTemplate.dropCollection(LEGACY_COLLECTION);
+            log.info("Dropped the legacy {} collection, which no longer holds retained events", LEGACY_COLLECTION);
+        }
+    }
+
+    // Created here rather than mapped on ClickEvent; no TTL, buckets expire whole
+    private void ensureIndexes(String bucket) {
+        if (indexedBuckets.contains(bucket)) {
+            return;
+        }
+        IndexOperations indexOps = mongoTemplate.indexOps(bucket);
+        indexOps.ensureIndex(new Index().on("urlId", Sort.Direction.ASC).on("timestamp", Sort.Direction.DESC)
+                .named("urlId_timestamp"));
+        indexOps.ensureIndex(new Index().on("ownerId", Sort.Direction.ASC).named("ownerId"));
+        indexedBuckets.add(bucket);
+        knownBuckets = null;
+    }
+
+    private KnownBuckets known() {
+        KnownBuckets known = knownBuckets;
+        if (known == null || known.loadedAt.plus(KNOWN_BUCKETS_TTL).isBefore(Instant.now())) {
+            known = refreshKnownBuckets();
+        }
+        return known;
+    }
+
+    private KnownBuckets refreshKnownBuckets() {
+        Map<String, YearMonth> months = new HashMap<>();
+        boolean legacyExists = false;
+        for (String name : mongoTemplate.getCollectionNames()) {
+            Matcher matcher = BUCKET_NAME.matcher(name);
+            if (matcher.matches()) {
+                months.put(name, YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            } else if (LEGACY_COLLECTION.equals(name)) {
+                legacyExists = true;
+            }
+        }
+        KnownBuckets known = new KnownBuckets(Map.copyOf(months), legacyExists, Instant.now());
+        knownBuckets = known;
+        return known;
+    }
+
+    private record KnownBuckets(Map<String, YearMonth> months, boolean legacyExists, Instant loadedAt) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import com.urlshorteningservice.minimizurl.domain.ClickRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * One-off rebuild of click_rollups from the raw click events, for links that predate the rollups
+ * or after a rollup write failure. Covers every fully retained UTC day before the current
+ * one: those rollups are deleted and replayed from the events, while today's document keeps
+ * receiving live increments untouched. Days whose events have already expired under
+ * app.clicks.events.retention are left alone, since their rollups are all that remains.
+ * Enable on a single node for one start-up, then switch it off again.
+ */
+@Component
+public class ClickRollupBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickRollupBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ClickRollupService clickRollupService;
+    private final ClickEventStore clickEventStore;
+    private final boolean enabled;
+    private final int flushKeys;
+    private final Duration retention;
+
+    public ClickRollupBackfill(MongoTemplate mongoTemplate,
+                               ClickRollupService clickRollupService,
+                               ClickEventStore clickEventStore,
+                               @Value("${app.analytics.rollups.backfill.enabled:false}") boolean enabled,
+                               @Value("${app.analytics.rollups.backfill.flush-keys:10000}") int flushKeys,
+                               @Value("${app.clicks.events.retention:400d}") Duration retention) {
+        this.mongoTemplate = mongoTemplate;
+        this.clickRollupService = clickRollupService;
+        this.clickEventStore = clickEventStore;
+        this.enabled = enabled;
+        this.flushKeys = flushKeys;
+        this.retention = retention;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            // The day the TTL cut-off falls on is only partially retained, so start the day after
+            LocalDate fromDay = LocalDate.ofInstant(Instant.now().minus(retention), ZoneOffset.UTC).plusDays(1);
+            backfill(fromDay, today);
+        }
+    }
+
+    // Rebuilds the days in [fromDay, untilDay)
+    public void backfill(LocalDate fromDay, LocalDate untilDay) {
+        log.info("Rebuilding click rollups for days {} to {} (exclusive)", fromDay, untilDay);
+
+        // 1. Drop the days being rebuilt; $inc upserts below recreate them from scratch
+        long removed = mongoTemplate.remove(new Query(Criteria.where("day")
+                .gte(fromDay.toString()).lt(untilDay.toString())), ClickRollup.class).getDeletedCount();
+
+        // 2. Stream the events and fold them into bounded in-memory deltas
+        Query events = new Query(Criteria.where("timestamp")
+                .gte(fromDay.atStartOfDay(ZoneOffset.UTC).toInstant())
+                .lt(untilDay.atStartOfDay(ZoneOffset.UTC).toInstant()));
+        events.fields().include("urlId", "referer", "userAgent", "ownerId", "timestamp");
+
+        Map<String, ClickRollupService.RollupDelta> deltas = new HashMap<>();
+        long replayed = 0;
+        for (String bucket : clickEventStore.bucketsSince(fromDay.atStartOfDay(ZoneOffset.UTC).toInstant())) {
+            try (Stream<ClickEvent> stream = mongoTemplate.stream(events, ClickEvent.class, bucket)) {
+                Iterator<ClickEvent> it = stream.iterator();
+                while (it.hasNext()) {
+                    clickRollupService.accumulate(deltas, it.next());
+                    if (deltas.size() >= flushKeys) {
+                        replayed += clickRollupService.apply(deltas);
+                        deltas.clear();
+                    }
+                }
+            }
+        }
+        replayed += clickRollupService.apply(deltas);
+
+        log.info("Click rollup backfill done: {} stale rollups removed, {} events replayed", removed, replayed);
+    }
+}
@@ -0,0 +1,221 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import com.urlshorteningservice.minimizurl.domain.ClickRollup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folds persisted click events into per-url, per-day ClickRollup documents.
+ * Each pipeline batch is pre-aggregated in memory and applied as one unordered bulk of
+ * $inc/$max upserts, so a batch of 500 clicks on one link costs a single document update.
+ * A day document keeps at most 'max-referrers' distinct referrer keys; clicks from further
+ * referrers are counted under "Other", so a link with a long tail of referrers cannot grow
+ * its documents without bound. The dedicated top-referrers endpoint reads the per-link
+ * Space-Saving summary instead and is not affected by the cap.
+ * The raw click_events remain the source of truth: a failed rollup write is counted and
+ * logged, and ClickRollupBackfill can rebuild past days from the events.
+ */
+@Service
+public class ClickRollupService implements ClickBatchListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickRollupService.class);
+
+    static final String DIRECT = "Direct";
+    static final String MOBILE = "Mobile";
+    static final String DESKTOP = "Desktop";
+    static final String OTHER = "Other";
+
+    private final MongoTemplate mongoTemplate;
+    private final int maxReferrers;
+
+    private final Counter applied;
+    private final Counter failures;
+
+    public ClickRollupService(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                              @Value("${app.analytics.rollups.max-referrers:100}") int maxReferrers) {
+        this.mongoTemplate = mongoTemplate;
+        this.maxReferrers = maxReferrers;
+        this.applied = Counter.builder("clicks.rollups.applied")
+                .description("Click events folded into click_rollups")
+                .register(meterRegistry);
+        this.failures = Counter.builder("clicks.rollups.failures").register(meterRegistry);
+    }
+
+    @Override
+    public void onBatch(List<ClickEvent> batch) {
+        Map<String, RollupDelta> deltas = new HashMap<>();
+        for (ClickEvent event : batch) {
+            accumulate(deltas, event);
+        }
+        apply(deltas);
+    }
+
+    // Adds one event to the pending deltas, keyed by rollup document id
+    void accumulate(Map<String, RollupDelta> deltas, ClickEvent event) {
+        if (event.getUrlId() == null || event.getTimestamp() == null) {
+            return;
+        }
+        String day = dayOf(event.getTimestamp());
+        RollupDelta delta = deltas.computeIfAbsent(rollupId(event.getUrlId(), day),
+                id -> new RollupDelta(event.getUrlId(), day, event.getOwnerId()));
+        delta.add(event);
+    }
+
+    // Returns the number of events written; failures are logged, not thrown
+    long apply(Map<String, RollupDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        long events = 0;
+        for (RollupDelta delta : deltas.values()) {
+            events += delta.total;
+        }
+        try {
+            // 1. Referrer keys already stored, so new ones beyond the cap can be folded into "Other"
+            Map<String, Set<String>> storedReferrers = storedReferrers(deltas.keySet());
+
+            // 2. One unordered bulk of upserts
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClickRollup.class);
+            for (Map.Entry<String, RollupDelta> entry : deltas.entrySet()) {
+                RollupDelta delta = entry.getValue();
+                delta.capReferrers(storedReferrers.getOrDefault(entry.getKey(), Set.of()), maxReferrers);
+                bulk.upsert(new Query(Criteria.where("_id").is(entry.getKey())), delta.toUpdate());
+            }
+            bulk.execute();
+            applied.increment(events);
+            return events;
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("Failed to apply click rollups for {} events across {} url-days: {}",
+                    events, deltas.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    // Concurrent writers on other nodes may each add keys up to the cap, so it is a bound, not an exact limit
+    private Map<String, Set<String>> storedReferrers(Set<String> rollupIds) {
+        Query query = new Query(Criteria.where("_id").in(rollupIds));
+        query.fields().include("referrers");
+        Map<String, Set<String>> stored = new HashMap<>();
+        for (ClickRollup rollup : mongoTemplate.find(query, ClickRollup.class)) {
+            stored.put(rollup.getId(), rollup.getReferrers() != null ? rollup.getReferrers().keySet() : Set.of());
+        }
+        return stored;
+    }
+
+    static String rollupId(long urlId, String day) {
+        return urlId + ":" + day;
+    }
+
+    static String dayOf(Instant timestamp) {
+        return LocalDate.ofInstant(timestamp, ZoneOffset.UTC).toString();
+    }
+
+    // Same classification the raw-event aggregation uses
+    static String deviceClass(String userAgent) {
+        return userAgent != null && userAgent.contains("Mobi") ? MOBILE : DESKTOP;
+    }
+
+    // Blank referers count as direct traffic; an empty field name is not a valid update path
+    static String referrerOf(String referer) {
+        return referer == null || referer.isEmpty() ? DIRECT : referer;
+    }
+
+    // Mongo field names cannot contain '.' or start with '$'; '%' is escaped so decoding is exact
+    static String encodeKey(String key) {
+        if (key.indexOf('%') < 0 && key.indexOf('.') < 0 && key.indexOf('$') < 0) {
+            return key;
+        }
+        return key.replace("%", "%25").replace(".", "%2E").replace("$", "%24");
+    }
+
+    static String decodeKey(String key) {
+        if (key.indexOf('%') < 0) {
+            return key;
+        }
+        return key.replace("%2E", ".").replace("%24", "$").replace("%25", "%");
+    }
+
+    // Pending increments for one rollup document
+    static final class RollupDelta {
+
+        private final long urlId;
+        private final String day;
+        private final String ownerId;
+        private long total;
+        private final Map<String, Long> referrers = new HashMap<>();
+        private final Map<String, Long> devices = new HashMap<>(4);
+        private Instant lastClick;
+
+        private RollupDelta(long urlId, String day, String ownerId) {
+            this.urlId = urlId;
+            this.day = day;
+            this.ownerId = ownerId;
+        }
+
+        private void add(ClickEvent event) {
+            total++;
+            referrers.merge(encodeKey(referrerOf(event.getReferer())), 1L, Long::sum);
+            devices.merge(deviceClass(event.getUserAgent()), 1L, Long::sum);
+            if (lastClick == null || event.getTimestamp().isAfter(lastClick)) {
+                lastClick = event.getTimestamp();
+            }
+        }
+
+        /**
+         * Keeps referrers already stored in the document and admits new ones, busiest first,
+         * while the document has fewer than 'max' keys; the remaining counts move to OTHER.
+         */
+        void capReferrers(Set<String> stored, int max) {
+            Set<String> keys = new HashSet<>(stored);
+            keys.remove(OTHER);
+            List<Map.Entry<String, Long>> newcomers = referrers.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(OTHER) && !keys.contains(entry.getKey()))
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .toList();
+            long folded = 0;
+            for (Map.Entry<String, Long> entry : newcomers) {
+                if (keys.size() < max) {
+                    keys.add(entry.getKey());
+                } else {
+                    folded += entry.getValue();
+                    referrers.remove(entry.getKey());
+                }
+            }
+            if (folded > 0) {
+                referrers.merge(OTHER, folded, Long::sum);
+            }
+        }
+
+        private Update toUpdate() {
+            Update update = new Update()
+                    .setOnInsert("urlId", urlId)
+                    .setOnInsert("day", day)
+                    .setOnInsert("ownerId", ownerId)
+                    .inc("total", total)
+                    .max("lastClick", lastClick);
+            referrers.forEach((referrer, count) -> update.inc("referrers." + referrer, count));
+            devices.forEach((device, count) -> update.inc("devices." + device, count));
+            return update;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import com.urlshorteningservice.minimizurl.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of persisted clicks to live dashboard subscribers (SSE).
+ * Click batches are folded into a per-link tick only while the link has subscribers;
+ * once per interval every subscriber is handed that tick (clicks, referrer and device deltas),
+ * even when it is empty, which doubles as a keep-alive. Each subscriber has a small bounded
+ * buffer drained by a shared sender pool; a subscriber whose buffer is full is disconnected
+ * rather than allowed to hold memory or a sender thread. Only clicks persisted by this node
+ * are seen.
+ */
+@Component
+public class ClickStreamHub implements ClickBatchListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ClickStreamHub.class);
+
+    // Caps the payload when a link is hit from many referrers within one interval
+    private static final int MAX_REFERRERS_PER_TICK = 10;
+
+    private final ConcurrentHashMap<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    // Guarded by 'this': written by the pipeline consumer, swapped by the publisher
+    private Map<Long, Tick> ticks = new HashMap<>();
+
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final Duration timeout;
+    private final ExecutorService senders;
+    private final Counter dropped;
+
+    public ClickStreamHub(MeterRegistry meterRegistry,
+                          @Value("${app.live.buffer-size:30}") int bufferSize,
+                          @Value("${app.live.max-subscribers:1000}") int maxSubscribers,
+                          @Value("${app.live.timeout:30m}") Duration timeout,
+                          @Value("${app.live.sender-threads:4}") int senderThreads) {
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+        AtomicInteger count = new AtomicInteger();
+        // At most one queued drain task per subscriber, so the work queue is bounded by max-subscribers
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "click-stream-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.dropped = Counter.builder("live.subscribers.dropped")
+                .description("Live subscribers disconnected because they fell behind")
+                .register(meterRegistry);
+        meterRegistry.gauge("live.subscribers", subscriberCount);
+    }
+
+    public SseEmitter subscribe(long urlId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ServiceUnavailableException("Too many live subscribers; try again later.");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(urlId, emitter, new ArrayBlockingQueue<>(bufferSize));
+        subscribers.computeIfAbsent(urlId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.urlId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @Override
+    public void onBatch(List<ClickEvent> batch) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (ClickEvent event : batch) {
+                if (event.getUrlId() != null && subscribers.containsKey(event.getUrlId())) {
+                    ticks.computeIfAbsent(event.getUrlId(), id -> new Tick()).add(event);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.live.interval:1s}")
+    public void publish() {
+        Map<Long, Tick> current;
+        synchronized (this) {
+            current = ticks;
+            ticks = new HashMap<>();
+        }
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Tick empty = new Tick();
+        subscribers.forEach((urlId, linkSubscribers) -> {
+            Map<String, Object> payload = current.getOrDefault(urlId, empty).toPayload(now);
+            for (Subscriber subscriber : linkSubscribers) {
+                enqueue(subscriber, payload);
+            }
+        });
+    }
+
+    private void enqueue(Subscriber subscriber, Map<String, Object> payload) {
+        if (!subscriber.buffer.offer(payload)) {
+            // Slow consumer: its buffer already holds bufferSize undelivered ticks
+            dropped.increment();
+            unsubscribe(subscriber);
+            subscriber.emitter.complete();
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            Map<String, Object> payload;
+            while (!subscriber.closed.get() && (payload = subscriber.buffer.poll()) != null) {
+                try {
+                    subscriber.emitter.send(SseEmitter.event().name("clicks").data(payload));
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; the container reports it through onError/onCompletion too
+                    log.debug("Live subscriber for {} disconnected: {}", subscriber.urlId, e.getMessage());
+                    unsubscribe(subscriber);
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+            // A tick enqueued after the last poll but before the flag was cleared is ours to send
+        } while (!subscriber.buffer.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdown();
+    }
+
+    private static final class Subscriber {
+
+        private final long urlId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Map<String, Object>> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(long urlId, SseEmitter emitter, BlockingQueue<Map<String, Object>> buffer) {
+            this.urlId = urlId;
+            this.emitter = emitter;
+            this.buffer = buffer;
+        }
+    }
+
+    // Deltas for one link over one interval
+    private static final class Tick {
+
+        private long clicks;
+        private final Map<String, Long> referrers = new HashMap<>();
+        private final Map<String, Long> devices = new HashMap<>(4);
+
+        private void add(ClickEvent event) {
+            clicks++;
+            referrers.merge(ClickRollupService.referrerOf(event.getReferer()), 1L, Long::sum);
+            devices.merge(ClickRollupService.deviceClass(event.getUserAgent()), 1L, Long::sum);
+        }
+
+        private Map<String, Object> toPayload(Instant time) {
+            Map<String, Long> topReferrers = new LinkedHashMap<>();
+            referrers.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(MAX_REFERRERS_PER_TICK)
+                    .forEach(entry -> topReferrers.put(entry.getKey(), entry.getValue()));
+
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("time", time);
+            payload.put("clicks", clicks);
+            payload.put("referrers", topReferrers);
+            payload.put("devices", devices);
+            return payload;
+        }
+    }
+}
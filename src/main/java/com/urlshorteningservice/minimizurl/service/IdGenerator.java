@@ -0,0 +1,28 @@
+package com.urlshorteningservice.minimizurl.service;
+
+/**
+ * Strategy for allocating numeric link ids, which ShorteningService turns into base62 codes.
+ * Implementations must return positive, unique ids and be safe to call from many threads.
+ */
+public interface IdGenerator {
+
+    long nextId(String sequenceName);
+
+    // Bulk allocation; implementations backed by a counter should reserve the range in one call
+    default long[] nextIds(String sequenceName, int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = nextId(sequenceName);
+        }
+        return ids;
+    }
+
+    // The 'count' consecutive ids ending at 'last', as returned by a counter advanced by 'count'
+    static long[] rangeEndingAt(long last, int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = last - count + 1 + i;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,160 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Streams every link a user owns straight from a Mongo cursor to the response.
+ * The cursor is walked in _id order over the {userId, _id} index and fetches one batch at a
+ * time; the next batch is only requested once the previous rows have been written, so a slow
+ * client throttles the cursor and memory stays constant however many links the user has.
+ */
+@Service
+public class LinkExportService {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final List<String> COLUMNS = List.of(
+            "shortCode", "id", "originalUrl", "customCode", "createdDate", "expirationDate");
+    private static final List<String> CLICK_COLUMNS = List.of("clicks", "lastClick");
+
+    private final MongoTemplate mongoTemplate;
+    private final ShorteningService shorteningService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public LinkExportService(MongoTemplate mongoTemplate,
+                             ShorteningService shorteningService,
+                             ObjectMapper objectMapper,
+                             @Value("${app.export.batch-size:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.shorteningService = shorteningService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public void export(String userId, Format format, boolean withClicks, OutputStream out) throws IOException {
+        List<String> columns = new ArrayList<>(COLUMNS);
+        if (withClicks) {
+            columns.addAll(CLICK_COLUMNS);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writeCsvRow(writer, columns);
+        }
+
+        try (Stream<Document> links = mongoTemplate.aggregateStream(exportQuery(userId, withClicks),
+                "url_mappings", Document.class)) {
+            Iterator<Document> cursor = links.iterator();
+            while (cursor.hasNext()) {
+                Map<String, Object> row = toRow(cursor.next(), withClicks);
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, row.values().stream().map(LinkExportService::csvValue).toList());
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    // 1. Index-backed match and sort; 2. optionally the latest rollup day for lastClick
+    Aggregation exportQuery(String userId, boolean withClicks) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(Criteria.where("userId").is(userId)));
+        stages.add(Aggregation.sort(Sort.by(Sort.Direction.ASC, "_id")));
+        if (withClicks) {
+            // One indexed probe per link on click_rollups {urlId, day}
+            stages.add(Aggregation.lookup()
+                    .from("click_rollups")
+                    .localField("_id")
+                    .foreignField("urlId")
+                    .pipeline(
+                            Aggregation.sort(Sort.by(Sort.Direction.DESC, "day")),
+                            Aggregation.limit(1),
+                            Aggregation.project("lastClick").andExclude("_id"))
+                    .as("latest"));
+            stages.add(Aggregation.addFields()
+                    .addFieldWithValue("lastClick", ArrayOperators.ArrayElemAt.arrayOf("latest.lastClick").elementAt(0))
+                    .build());
+            stages.add(Aggregation.project().andExclude("latest"));
+        }
+        return Aggregation.newAggregation(stages)
+                .withOptions(AggregationOptions.builder().cursorBatchSize(batchSize).build());
+    }
+
+    private Map<String, Object> toRow(Document doc, boolean withClicks) {
+        long id = ((Number) doc.get("_id")).longValue();
+        String customCode = doc.getString("customCode");
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("shortCode", customCode != null ? customCode : shorteningService.encode(id));
+        row.put("id", id);
+        row.put("originalUrl", doc.getString("originalUrl"));
+        row.put("customCode", customCode);
+        row.put("createdDate", instant(doc.getDate("createdDate")));
+        row.put("expirationDate", instant(doc.getDate("expirationDate")));
+        if (withClicks) {
+            Number clicks = (Number) doc.get("clicks");
+            row.put("clicks", clicks != null ? clicks.longValue() : 0L);
+            row.put("lastClick", instant(doc.getDate("lastClick")));
+        }
+        return row;
+    }
+
+    private static String instant(Date date) {
+        return date != null ? date.toInstant().toString() : null;
+    }
+
+    private static void writeCsvRow(Writer writer, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(values.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180 quoting; cells that a spreadsheet would evaluate as a formula are prefixed with '
+    static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (!text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0 && !(value instanceof Number)) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
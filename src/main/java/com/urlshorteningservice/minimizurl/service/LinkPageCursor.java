@@ -0,0 +1,59 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.exception.InvalidRequestException;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position of the last link on a /my-links page: its createdDate and _id, the page sort key.
+ * Serialized as an opaque, versioned token. v1 tokens carried only the _id, which is not
+ * creation order under mongo-block or snowflake ids, and are rejected rather than reinterpreted.
+ * Links written before createdDate existed sort last and are paged by _id alone.
+ */
+record LinkPageCursor(Instant createdDate, long id) {
+
+    private static final String VERSION = "v2:";
+
+    String encode() {
+        String date = createdDate != null ? Long.toString(createdDate.toEpochMilli()) : "";
+        byte[] token = (VERSION + date + ":" + id).getBytes(StandardCharsets.US_ASCII);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    static LinkPageCursor decode(String cursor) {
+        String token;
+        try {
+            token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+        if (token.startsWith("v1:")) {
+            throw new InvalidRequestException("Cursor has expired, start again from the first page");
+        }
+        int separator = token.indexOf(':', VERSION.length());
+        if (!token.startsWith(VERSION) || separator < 0) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+        try {
+            String date = token.substring(VERSION.length(), separator);
+            return new LinkPageCursor(date.isEmpty() ? null : Instant.ofEpochMilli(Long.parseLong(date)),
+                    Long.parseLong(token.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+
+    // Everything after this position in (createdDate desc, _id desc) order; missing dates sort last
+    Criteria after() {
+        if (createdDate == null) {
+            return Criteria.where("createdDate").is(null).and("_id").lt(id);
+        }
+        return new Criteria().orOperator(
+                Criteria.where("createdDate").lt(createdDate),
+                Criteria.where("createdDate").is(createdDate).and("_id").lt(id),
+                Criteria.where("createdDate").is(null));
+    }
+}
@@ -0,0 +1,430 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Open-addressing hash table from short code to redirect target, stored in two memory-mapped
+ * files so it lives outside the Java heap and survives restarts.
+ *
+ * The index file holds a header and a power-of-two array of 16-byte slots
+ * (64-bit code fingerprint, data offset), probed linearly. The data file is an append-only log
+ * of records (urlId, expiry, code, owner, URL) protected by a CRC32C, mapped in segments of up
+ * to 1 GiB; a record never spans two segments. Updates append a new record and repoint the slot, deletes
+ * leave a tombstone, so dead records accumulate until the table is rebuilt.
+ *
+ * One writer at a time (methods are synchronized); readers never lock. Slots are published with
+ * release/acquire semantics after the record they point to is fully written. A torn or corrupted
+ * record fails its CRC and reads as a miss.
+ */
+public final class MappedRedirectTable implements AutoCloseable {
+
+    private static final long MAGIC = 0x4d494e4952454449L; // "MINIREDI"
+    private static final int VERSION = 2;
+    private static final int STATE_BUILDING = 0;
+    private static final int STATE_READY = 1;
+
+    // Header: magic(8) version(4) state(4) capacity(8) dataEnd(8) liveSlots(8) builtAt(8), padded to 64
+    private static final int HEADER_SIZE = 64;
+    private static final int OFF_STATE = 12;
+    private static final int OFF_CAPACITY = 16;
+    private static final int OFF_DATA_END = 24;
+    private static final int OFF_USED = 32;
+    private static final int OFF_BUILT_AT = 40;
+    private static final int SLOT_SIZE = 16;
+
+    static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long TOMBSTONE = -1;
+    // Data offset 0 is never a record, so an unset slot offset reads as 0
+    private static final long FIRST_RECORD = 8;
+    // len(4) crc(4) urlId(8) expiry(8) codeLen(2) ownerLen(2) urlLen(4)
+    private static final int RECORD_OVERHEAD = 32;
+    private static final int MAX_RECORD = 1 << 20;
+    public static final long MAX_CAPACITY = 1L << 26;
+    private static final double MAX_LOAD = 0.75;
+
+    private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] segments;
+    private final long maxDataBytes;
+    private final long capacity;
+    private final long mask;
+    private final Instant builtAt;
+
+    // Writer state, guarded by 'this'
+    private long dataEnd;
+    private long usedSlots;
+
+    private MappedRedirectTable(FileChannel indexChannel, FileChannel dataChannel, MappedByteBuffer index,
+                                long capacity, long maxDataBytes, long dataEnd, long usedSlots) throws IOException {
+        this.builtAt = Instant.ofEpochMilli(index.getLong(OFF_BUILT_AT));
+        this.indexChannel = indexChannel;
+        this.dataChannel = dataChannel;
+        this.index = index;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.maxDataBytes = maxDataBytes;
+        this.segments = new MappedByteBuffer[(int) Math.max(1, (maxDataBytes + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+        this.dataEnd = dataEnd;
+        this.usedSlots = usedSlots;
+        for (int i = 0; i <= (int) ((dataEnd - 1) >>> SEGMENT_SHIFT) && i < segments.length; i++) {
+            segment(i);
+        }
+    }
+
+    // Smallest power of two that keeps 'entries' under the maximum load factor
+    public static long capacityFor(long entries) {
+        long needed = (long) Math.ceil(Math.min(Math.max(entries, 1), MAX_CAPACITY) / MAX_LOAD);
+        return Math.min(MAX_CAPACITY, Long.highestOneBit(Math.max(needed - 1, 1)) << 1);
+    }
+
+    // 'builtAt' is when the source snapshot was started; changes after it must reach the table some other way
+    public static MappedRedirectTable create(Path indexFile, Path dataFile, long capacity, long maxDataBytes,
+                                             Instant builtAt) throws IOException {
+        if (Long.bitCount(capacity) != 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be a power of two up to " + MAX_CAPACITY);
+        }
+        FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel dataChannel = FileChannel.open(dataFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * SLOT_SIZE);
+        index.putLong(0, MAGIC);
+        index.putInt(8, VERSION);
+        index.putInt(OFF_STATE, STATE_BUILDING);
+        index.putLong(OFF_CAPACITY, capacity);
+        index.putLong(OFF_DATA_END, FIRST_RECORD);
+        index.putLong(OFF_USED, 0);
+        index.putLong(OFF_BUILT_AT, builtAt.toEpochMilli());
+        return new MappedRedirectTable(indexChannel, dataChannel, index, capacity, maxDataBytes, FIRST_RECORD, 0);
+    }
+
+    // Maps an existing table; fails if the files are not a completely built table of this version
+    public static MappedRedirectTable open(Path indexFile, Path dataFile, long maxDataBytes) throws IOException {
+        FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel dataChannel = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            long capacity = header.getLong(OFF_CAPACITY);
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION || header.getInt(OFF_STATE) != STATE_READY
+                    || Long.bitCount(capacity) != 1 || capacity > MAX_CAPACITY
+                    || indexChannel.size() < HEADER_SIZE + capacity * SLOT_SIZE) {
+                throw new IOException("Not a complete redirect table: " + indexFile);
+            }
+            long dataEnd = header.getLong(OFF_DATA_END);
+            if (dataEnd < FIRST_RECORD || dataEnd > maxDataBytes) {
+                throw new IOException("Redirect table data does not fit in the configured maximum: " + dataFile);
+            }
+            MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * SLOT_SIZE);
+            return new MappedRedirectTable(indexChannel, dataChannel, index, capacity, maxDataBytes,
+                    dataEnd, header.getLong(OFF_USED));
+        } catch (IOException | RuntimeException e) {
+            indexChannel.close();
+            dataChannel.close();
+            throw e;
+        }
+    }
+
+    public CachedMapping get(String code) {
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        long fingerprint = fingerprint(code);
+        for (long probe = 0, slot = fingerprint & mask; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            long slotFingerprint = fingerprintAt(slot);
+            if (slotFingerprint == 0) {
+                return null;
+            }
+            if (slotFingerprint != fingerprint) {
+                continue;
+            }
+            long offset = dataOffsetAt(slot);
+            if (offset == TOMBSTONE || offset == 0) {
+                continue;
+            }
+            CachedMapping mapping = readIfCode(offset, codeBytes);
+            if (mapping != null) {
+                return mapping;
+            }
+        }
+        return null;
+    }
+
+    // False when the table or its data file is full; the caller falls back to its other sources
+    public synchronized boolean put(String code, CachedMapping mapping) {
+        byte[] record = encode(code, mapping);
+        if (record == null) {
+            return false;
+        }
+        long fingerprint = fingerprint(code);
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+
+        long target = -1;
+        boolean reuse = false;
+        for (long probe = 0, slot = fingerprint & mask; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            long slotFingerprint = fingerprintAt(slot);
+            if (slotFingerprint == 0) {
+                target = slot;
+                break;
+            }
+            if (slotFingerprint == fingerprint) {
+                long offset = dataOffsetAt(slot);
+                // A tombstone with our fingerprint is reused; a live slot only if it holds this code
+                if (offset == TOMBSTONE || offset == 0 || readIfCode(offset, codeBytes) != null) {
+                    target = slot;
+                    reuse = true;
+                    break;
+                }
+            }
+        }
+        if (target < 0 || (!reuse && usedSlots + 1 > capacity * MAX_LOAD)) {
+            return false;
+        }
+
+        long offset = append(record);
+        if (offset < 0) {
+            return false;
+        }
+        // Record first, then the offset, then (for a new slot) the fingerprint that makes it reachable
+        setDataOffset(target, offset);
+        if (!reuse) {
+            setFingerprint(target, fingerprint);
+            usedSlots++;
+            index.putLong(OFF_USED, usedSlots);
+        }
+        return true;
+    }
+
+    public synchronized boolean remove(String code) {
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        long fingerprint = fingerprint(code);
+        for (long probe = 0, slot = fingerprint & mask; probe < capacity; probe++, slot = (slot + 1) & mask) {
+            long slotFingerprint = fingerprintAt(slot);
+            if (slotFingerprint == 0) {
+                return false;
+            }
+            if (slotFingerprint == fingerprint) {
+                long offset = dataOffsetAt(slot);
+                if (offset != TOMBSTONE && offset != 0 && readIfCode(offset, codeBytes) != null) {
+                    setDataOffset(slot, TOMBSTONE);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Full scan, for removals whose codes are not known (account deletion); O(capacity)
+    public synchronized int removeIf(Predicate<CachedMapping> condition) {
+        int removed = 0;
+        for (long slot = 0; slot < capacity; slot++) {
+            long offset = dataOffsetAt(slot);
+            if (offset == TOMBSTONE || offset == 0) {
+                continue;
+            }
+            CachedMapping mapping = readIfCode(offset, null);
+            if (mapping != null && condition.test(mapping)) {
+                setDataOffset(slot, TOMBSTONE);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Called once a bulk load has finished; only ready tables are reopened after a restart
+    public synchronized void markReady() {
+        index.putInt(OFF_STATE, STATE_READY);
+        force();
+    }
+
+    public synchronized long usedSlots() {
+        return usedSlots;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public Instant builtAt() {
+        return builtAt;
+    }
+
+    public synchronized long dataBytes() {
+        return dataEnd;
+    }
+
+    public synchronized void force() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        index.force();
+    }
+
+    // Mappings are released by the GC once no reader holds them; closing the channels does not unmap
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        indexChannel.close();
+        dataChannel.close();
+    }
+
+    // The index is at most 1 GiB, so slot positions fit the int the view VarHandle takes
+    private static int slotOffset(long slot) {
+        return (int) (HEADER_SIZE + slot * SLOT_SIZE);
+    }
+
+    private long fingerprintAt(long slot) {
+        return (long) SLOT.getAcquire((ByteBuffer) index, slotOffset(slot));
+    }
+
+    private long dataOffsetAt(long slot) {
+        return (long) SLOT.getAcquire((ByteBuffer) index, slotOffset(slot) + 8);
+    }
+
+    private void setFingerprint(long slot, long fingerprint) {
+        SLOT.setRelease((ByteBuffer) index, slotOffset(slot), fingerprint);
+    }
+
+    private void setDataOffset(long slot, long offset) {
+        SLOT.setRelease((ByteBuffer) index, slotOffset(slot) + 8, offset);
+    }
+
+    // Zero marks an empty slot, so it is never a fingerprint
+    private static long fingerprint(String code) {
+        long hash = BloomFilter.hash64(code);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private long append(byte[] record) {
+        long offset = dataEnd;
+        long segmentEnd = Math.min(((offset >>> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT, maxDataBytes);
+        if (offset + record.length > segmentEnd) {
+            offset = segmentEnd;
+        }
+        int segmentIndex = (int) (offset >>> SEGMENT_SHIFT);
+        if (segmentIndex >= segments.length || offset + record.length > maxDataBytes) {
+            return -1;
+        }
+        ByteBuffer segment;
+        try {
+            segment = segment(segmentIndex);
+        } catch (IOException e) {
+            return -1;
+        }
+        segment.put((int) (offset & (SEGMENT_SIZE - 1)), record);
+        dataEnd = offset + record.length;
+        index.putLong(OFF_DATA_END, dataEnd);
+        return offset;
+    }
+
+    private MappedByteBuffer segment(int segmentIndex) throws IOException {
+        MappedByteBuffer segment = segments[segmentIndex];
+        if (segment == null) {
+            // Mapping past the end grows the file (sparsely) to cover the whole segment
+            long start = (long) segmentIndex << SEGMENT_SHIFT;
+            segment = dataChannel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_SIZE, maxDataBytes - start));
+            segments[segmentIndex] = segment;
+        }
+        return segment;
+    }
+
+    private static byte[] encode(String code, CachedMapping mapping) {
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        byte[] ownerBytes = mapping.userId() != null ? mapping.userId().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] urlBytes = mapping.originalUrl().getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_OVERHEAD + codeBytes.length + (ownerBytes != null ? ownerBytes.length : 0) + urlBytes.length;
+        if (codeBytes.length > Short.MAX_VALUE || (ownerBytes != null && ownerBytes.length > Short.MAX_VALUE)
+                || length > MAX_RECORD) {
+            return null;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length);
+        record.putInt(0); // CRC, filled in below
+        record.putLong(mapping.id());
+        record.putLong(mapping.expirationDate() != null ? mapping.expirationDate().toEpochMilli() : Long.MIN_VALUE);
+        record.putShort((short) codeBytes.length);
+        record.putShort((short) (ownerBytes != null ? ownerBytes.length : -1));
+        record.putInt(urlBytes.length);
+        record.put(codeBytes);
+        if (ownerBytes != null) {
+            record.put(ownerBytes);
+        }
+        record.put(urlBytes);
+
+        byte[] bytes = record.array();
+        ByteBuffer.wrap(bytes).putInt(4, crc(bytes));
+        return bytes;
+    }
+
+    // Decodes the record at 'offset' if it is intact and (when given) stored under 'codeBytes'
+    private CachedMapping readIfCode(long offset, byte[] codeBytes) {
+        int segmentIndex = (int) (offset >>> SEGMENT_SHIFT);
+        if (offset < FIRST_RECORD || segmentIndex >= segments.length) {
+            return null;
+        }
+        MappedByteBuffer segment = segments[segmentIndex];
+        if (segment == null) {
+            return null;
+        }
+        int position = (int) (offset & (SEGMENT_SIZE - 1));
+        if (position + RECORD_OVERHEAD > segment.capacity()) {
+            return null;
+        }
+        int length = segment.getInt(position);
+        if (length < RECORD_OVERHEAD || length > MAX_RECORD || position + (long) length > segment.capacity()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        segment.get(position, bytes);
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        if (record.getInt(4) != crc(bytes)) {
+            return null;
+        }
+
+        long urlId = record.getLong(8);
+        long expiry = record.getLong(16);
+        int codeLength = record.getShort(24);
+        int ownerLength = record.getShort(26);
+        int urlLength = record.getInt(28);
+        int codeStart = RECORD_OVERHEAD;
+        if (codeLength < 0 || urlLength < 0
+                || codeStart + codeLength + Math.max(ownerLength, 0) + (long) urlLength != length) {
+            return null;
+        }
+        if (codeBytes != null
+                && !Arrays.equals(bytes, codeStart, codeStart + codeLength, codeBytes, 0, codeBytes.length)) {
+            return null;
+        }
+        int ownerStart = codeStart + codeLength;
+        int urlStart = ownerStart + Math.max(ownerLength, 0);
+        String owner = ownerLength >= 0 ? new String(bytes, ownerStart, ownerLength, StandardCharsets.UTF_8) : null;
+        String url = new String(bytes, urlStart, urlLength, StandardCharsets.UTF_8);
+        return new CachedMapping(urlId, url, owner, expiry == Long.MIN_VALUE ? null : Instant.ofEpochMilli(expiry));
+    }
+
+    // Covers everything after the CRC field
+    private static int crc(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record, 8, record.length - 8);
+        return (int) crc.getValue();
+    }
+}
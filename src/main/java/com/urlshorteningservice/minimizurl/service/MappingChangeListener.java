@@ -0,0 +1,379 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps node-local copies of mappings (UrlMappingCache, RedirectTable, ShortCodeFilter) coherent
+ * with writes made on any node, by following a MongoDB change stream on url_mappings and
+ * short_codes. Only events that can change a redirect are delivered: code claims and deletions
+ * (including TTL expiry), and URL changes. Click counters and sliding expiries are filtered out.
+ * The stream is resumed from the last seen token after a disconnect. When it cannot be resumed
+ * (the token fell off the oplog), every local copy is flushed, since events may have been lost.
+ * With the redirect table on, the token is saved together with the name of the table it covers,
+ * so a restarted node only serves that table again if the stream resumes without a gap.
+ * Requires a replica set (or sharded cluster); against a standalone server it logs and stops.
+ */
+@Component
+public class MappingChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MappingChangeListener.class);
+
+    // Server errors after which the stream cannot continue from its token
+    private static final Set<Integer> UNRESUMABLE = Set.of(
+            260,  // InvalidResumeToken
+            280,  // ChangeStreamFatalError
+            286); // ChangeStreamHistoryLost
+    // "$changeStream stage is only supported on replica sets"
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    private final MongoTemplate mongoTemplate;
+    private final UrlMappingCache urlMappingCache;
+    private final RedirectTable redirectTable;
+    private final ShortCodeFilter shortCodeFilter;
+    private final ShorteningService shorteningService;
+    private final boolean enabled;
+    private final Path tokenFile;
+    private final Duration reconnectDelay;
+    private final String mappingsCollection;
+    private final String codesCollection;
+
+    private final Counter events;
+    private final Counter flushes;
+
+    private volatile boolean running;
+    private volatile Thread worker;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private volatile BsonDocument resumeToken;
+    private volatile BsonDocument savedToken;
+    // Redirect table the saved token was written for, and the one read back at startup
+    private volatile String savedTable;
+    private volatile String tokenTable;
+
+    public MappingChangeListener(MongoTemplate mongoTemplate,
+                                 UrlMappingCache urlMappingCache,
+                                 RedirectTable redirectTable,
+                                 ShortCodeFilter shortCodeFilter,
+                                 ShorteningService shorteningService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.cache.coherence.enabled:true}") boolean enabled,
+                                 @Value("${app.cache.coherence.token-file:./data/cache-coherence.token}") Path tokenFile,
+                                 @Value("${app.cache.coherence.reconnect-delay:2s}") Duration reconnectDelay) {
+        this.mongoTemplate = mongoTemplate;
+        this.urlMappingCache = urlMappingCache;
+        this.redirectTable = redirectTable;
+        this.shortCodeFilter = shortCodeFilter;
+        this.shorteningService = shorteningService;
+        this.enabled = enabled;
+        this.tokenFile = tokenFile;
+        this.reconnectDelay = reconnectDelay;
+        this.mappingsCollection = mongoTemplate.getCollectionName(UrlMapping.class);
+        this.codesCollection = mongoTemplate.getCollectionName(ShortCode.class);
+        this.events = Counter.builder("cache.coherence.events")
+                .description("Change stream events applied to the local caches")
+                .register(meterRegistry);
+        this.flushes = Counter.builder("cache.coherence.flushes")
+                .description("Full flushes after the change stream could not be resumed")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled && redirectTable.isEnabled()) {
+            log.warn("Cache coherence is off; the redirect table cannot see changes and will not be served");
+        }
+        if (!enabled || running) {
+            return;
+        }
+        // Only the redirect table outlives a restart, so only then is it worth catching up on missed events
+        BsonDocument saved = redirectTable.isEnabled() ? readToken() : null;
+        if (saved != null && saved.isDocument("token")) {
+            resumeToken = saved.getDocument("token");
+            tokenTable = saved.isString("redirectTable") ? saved.getString("redirectTable").getValue() : null;
+        } else {
+            // Files written before the table name was recorded hold the bare token
+            resumeToken = saved;
+            tokenTable = null;
+        }
+        savedToken = resumeToken;
+        savedTable = tokenTable;
+        running = true;
+        worker = new Thread(this::follow, "mapping-change-listener");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = worker;
+            worker = null;
+        }
+        if (current == null) {
+            return;
+        }
+        closeCursor();
+        current.interrupt();
+        try {
+            current.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveToken();
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.coherence.token-save-interval:5s}")
+    public void saveToken() {
+        BsonDocument token = resumeToken;
+        if (!redirectTable.isEnabled() || token == null) {
+            return;
+        }
+        // Every change up to the token has reached this table (null while it is not covered)
+        String table = redirectTable.coveredTable();
+        if (token.equals(savedToken) && Objects.equals(table, savedTable)) {
+            return;
+        }
+        BsonDocument saved = new BsonDocument("token", token);
+        if (table != null) {
+            saved.put("redirectTable", new BsonString(table));
+        }
+        try {
+            Files.createDirectories(tokenFile.toAbsolutePath().getParent());
+            Path temp = tokenFile.resolveSibling(tokenFile.getFileName() + ".tmp");
+            Files.writeString(temp, saved.toJson(), StandardCharsets.UTF_8);
+            Files.move(temp, tokenFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            savedToken = token;
+            savedTable = table;
+        } catch (IOException e) {
+            log.warn("Could not save the change stream resume token: {}", e.getMessage());
+        }
+    }
+
+    // True once a stream is open, i.e. later writes will be seen
+    boolean isFollowing() {
+        return cursor != null;
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                // 1. Open (or resume) the stream
+                ChangeStreamIterable<Document> stream = mongoTemplate.getDb()
+                        .watch(pipeline())
+                        .fullDocument(FullDocument.UPDATE_LOOKUP)
+                        .maxAwaitTime(1, TimeUnit.SECONDS);
+                BsonDocument token = resumeToken;
+                if (token != null) {
+                    stream = stream.resumeAfter(token);
+                }
+
+                // 2. Apply events; the cursor's token also advances while the collections are idle
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> opened = stream.cursor()) {
+                    cursor = opened;
+                    log.info("Following changes to {} and {}{}", mappingsCollection, codesCollection,
+                            token != null ? " from the saved resume token" : "");
+                    boolean caughtUp = false;
+                    while (running) {
+                        ChangeStreamDocument<Document> change = opened.tryNext();
+                        if (change == null && !caughtUp) {
+                            // Everything since the token has been applied; later writes elsewhere will be seen
+                            caughtUp = true;
+                            urlMappingCache.setCoherent(true);
+                            shortCodeFilter.setFollowing(true, token != null);
+                            redirectTable.startedFollowing(token != null, tokenTable);
+                        }
+                        if (change != null && !apply(change)) {
+                            break;
+                        }
+                        if (opened.getResumeToken() != null) {
+                            resumeToken = opened.getResumeToken();
+                        }
+                    }
+                } finally {
+                    cursor = null;
+                    urlMappingCache.setCoherent(false);
+                    shortCodeFilter.setFollowing(false, false);
+                    redirectTable.stoppedFollowing();
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    return;
+                }
+                if (e.getCode() == NOT_A_REPLICA_SET) {
+                    log.warn("Change streams need a replica set; cache entries on this node will not see "
+                            + "writes from other nodes until they expire{}",
+                            redirectTable.isEnabled() ? ", and the redirect table will not be served" : "");
+                    running = false;
+                    return;
+                }
+                if (UNRESUMABLE.contains(e.getCode())) {
+                    // 3. Events between the token and now are gone; start over from a clean slate
+                    log.warn("Change stream cannot resume ({}); flushing local mapping caches", e.getMessage());
+                    flushAll();
+                    resumeToken = null;
+                } else {
+                    log.warn("Change stream interrupted, resuming in {}: {}", reconnectDelay, e.getMessage());
+                    sleep();
+                }
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Change stream listener failed, restarting in {}", reconnectDelay, e);
+                sleep();
+            }
+        }
+    }
+
+    // False when the stream has ended (invalidate) and must be reopened
+    private boolean apply(ChangeStreamDocument<Document> change) {
+        events.increment();
+        OperationType type = change.getOperationType();
+        String collection = change.getNamespace() != null ? change.getNamespace().getCollectionName() : null;
+
+        switch (type) {
+            case INVALIDATE -> {
+                // Only follows a drop or rename; the next stream starts after it
+                resumeToken = null;
+                return false;
+            }
+            case DROP, RENAME, DROP_DATABASE -> {
+                flushAll();
+                return true;
+            }
+            default -> {
+                // Insert, update, replace and delete, all keyed by the document's _id
+            }
+        }
+
+        BsonValue id = change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null;
+        if (id == null) {
+            return true;
+        }
+        if (codesCollection.equals(collection)) {
+            applyToCode(type, id.asString().getValue(), change.getFullDocument());
+        } else if (mappingsCollection.equals(collection)) {
+            applyToMapping(type, id.asNumber().longValue(), change.getFullDocument());
+        }
+        return true;
+    }
+
+    private void applyToCode(OperationType type, String code, Document fullDocument) {
+        urlMappingCache.invalidate(code);
+        ShortCode entry = fullDocument != null ? mongoTemplate.getConverter().read(ShortCode.class, fullDocument) : null;
+        if (type == OperationType.DELETE || entry == null) {
+            redirectTable.remove(code, null);
+            return;
+        }
+        if (type == OperationType.INSERT) {
+            // New on another node: make it pass this node's filter and negative cache
+            boolean generated = code.equals(shorteningService.encode(entry.getUrlId()));
+            shortCodeFilter.register(entry.getUrlId(), generated ? null : code);
+        }
+        redirectTable.put(code, entry.toCachedMapping());
+    }
+
+    // Covers links resolved through the legacy url_mappings lookup as well
+    private void applyToMapping(OperationType type, long id, Document fullDocument) {
+        String generated = shorteningService.encode(id);
+        UrlMapping mapping = fullDocument != null ? mongoTemplate.getConverter().read(UrlMapping.class, fullDocument) : null;
+        String customCode = mapping != null ? mapping.getCustomCode() : null;
+
+        urlMappingCache.invalidate(generated);
+        urlMappingCache.invalidate(customCode);
+        if (type == OperationType.DELETE || mapping == null) {
+            redirectTable.remove(generated, id);
+            return;
+        }
+        CachedMapping cached = CachedMapping.from(mapping);
+        redirectTable.replace(generated, cached);
+        redirectTable.replace(customCode, cached);
+    }
+
+    private List<Bson> pipeline() {
+        Bson redirectFields = Filters.or(
+                Filters.in("operationType", "delete", "replace"),
+                Filters.exists("updateDescription.updatedFields.originalUrl"));
+        return List.of(Aggregates.match(Filters.or(
+                Filters.in("operationType", "invalidate", "dropDatabase"),
+                Filters.and(Filters.in("operationType", "drop", "rename"),
+                        Filters.in("ns.coll", mappingsCollection, codesCollection)),
+                Filters.and(Filters.eq("ns.coll", codesCollection),
+                        Filters.or(Filters.eq("operationType", "insert"), redirectFields)),
+                Filters.and(Filters.eq("ns.coll", mappingsCollection), redirectFields))));
+    }
+
+    private void flushAll() {
+        flushes.increment();
+        urlMappingCache.invalidateAll();
+        redirectTable.invalidateAll();
+        shortCodeFilter.rebuildInBackground();
+    }
+
+    private BsonDocument readToken() {
+        try {
+            return Files.exists(tokenFile) ? BsonDocument.parse(Files.readString(tokenFile, StandardCharsets.UTF_8)) : null;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable change stream resume token {}: {}", tokenFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private void closeCursor() {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (RuntimeException e) {
+                log.debug("Closing the change stream cursor failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(reconnectDelay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
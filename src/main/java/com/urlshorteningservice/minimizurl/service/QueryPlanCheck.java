@@ -0,0 +1,143 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Explains every analytics pipeline (plus the cascade-delete filters and the link export) at startup and reports
+ * those whose winning plan contains a COLLSCAN, so a dropped or renamed index shows up at
+ * deploy time instead of as slow fstats requests. WARN logs, FAIL aborts startup, OFF skips.
+ */
+@Component
+public class QueryPlanCheck implements ApplicationRunner {
+
+    public enum Mode { OFF, WARN, FAIL }
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanCheck.class);
+
+    // Any value works: the planner picks the same plan shape for every urlId
+    private static final long PROBE_URL_ID = 0L;
+
+    private final MongoTemplate mongoTemplate;
+    private final AnalyticsService analyticsService;
+    private final ClickEventStore clickEventStore;
+    private final LinkExportService linkExportService;
+    private final Mode mode;
+
+    public QueryPlanCheck(MongoTemplate mongoTemplate,
+                          AnalyticsService analyticsService,
+                          ClickEventStore clickEventStore,
+                          LinkExportService linkExportService,
+                          @Value("${app.analytics.plan-check:WARN}") Mode mode) {
+        this.mongoTemplate = mongoTemplate;
+        this.analyticsService = analyticsService;
+        this.clickEventStore = clickEventStore;
+        this.linkExportService = linkExportService;
+        this.mode = mode;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+
+        List<AnalyticsService.PlannedQuery> queries = new ArrayList<>(analyticsService.plannedQueries(PROBE_URL_ID));
+        for (String bucket : clickEventStore.allBuckets()) {
+            queries.add(byOwner(bucket));
+        }
+        queries.add(byOwner("click_rollups"));
+        queries.add(new AnalyticsService.PlannedQuery("linkExport", "url_mappings",
+                linkExportService.exportQuery("", false)));
+
+        List<String> scans = new ArrayList<>();
+        for (AnalyticsService.PlannedQuery query : queries) {
+            try {
+                if (plansCollectionScan(explain(query))) {
+                    scans.add(query.collection() + " " + query.name());
+                }
+            } catch (Exception e) {
+                // An unreachable database is reported by the health check, not here
+                log.warn("Could not explain {} on {}: {}", query.name(), query.collection(), e.getMessage());
+            }
+        }
+
+        if (scans.isEmpty()) {
+            log.info("Query plan check: {} analytics queries use indexes", queries.size());
+            return;
+        }
+        String message = "Collection scan planned for " + String.join(", ", scans)
+                + "; check the indexes created by ClickEventStore and declared on ClickRollup and UrlMapping";
+        if (mode == Mode.FAIL) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+
+    private static AnalyticsService.PlannedQuery byOwner(String collection) {
+        AggregationOperation match = Aggregation.match(Criteria.where("ownerId").is(""));
+        return new AnalyticsService.PlannedQuery("deleteByOwnerId", collection, Aggregation.newAggregation(match));
+    }
+
+    private Document explain(AnalyticsService.PlannedQuery query) {
+        Document aggregate = new Document("aggregate", query.collection())
+                .append("pipeline", query.aggregation().toPipeline(Aggregation.DEFAULT_CONTEXT))
+                .append("cursor", new Document());
+        return mongoTemplate.getDb().runCommand(new Document("explain", aggregate)
+                .append("verbosity", "queryPlanner"));
+    }
+
+    // Only winning plans count; the planner may well have rejected a collection scan
+    static boolean plansCollectionScan(Object node) {
+        if (node instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if ("winningPlan".equals(entry.getKey()) && containsStage(entry.getValue(), "COLLSCAN")) {
+                    return true;
+                }
+                if (!"rejectedPlans".equals(entry.getKey()) && plansCollectionScan(entry.getValue())) {
+                    return true;
+                }
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object item : list) {
+                if (plansCollectionScan(item)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsStage(Object node, String stage) {
+        if (node instanceof Map<?, ?> map) {
+            if (stage.equals(map.get("stage"))) {
+                return true;
+            }
+            for (Object value : map.values()) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object item : list) {
+                if (containsStage(item, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,445 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Node-local, off-heap copy of the whole code -> redirect target working set
+ * (see MappedRedirectTable), consulted before the heap cache and MongoDB.
+ * The table is built from short_codes and written only by this node's writes through UrlService
+ * and by MappingChangeListener, never by reads: a read racing an update or delete could
+ * otherwise store the old target after the write removed it.
+ * The table is served only while the change stream has been applied without a gap since the
+ * table was built. After a restart that means the saved resume token must have been saved for
+ * this table; otherwise, or when the table is older than 'max-age', it is rebuilt first. Without
+ * a change stream (standalone server, coherence off) the table is never served.
+ * The periodic rebuild reclaims space from updated and deleted links and resizes the table.
+ * A missing or expired entry is never an answer on its own: the caller falls back to the
+ * cache and database.
+ */
+@Component
+public class RedirectTable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectTable.class);
+
+    private static final String CURRENT = "CURRENT";
+    private static final String PREFIX = "redirects-";
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final Path directory;
+    private final long minExpectedEntries;
+    private final long maxDataBytes;
+    private final Duration maxAge;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile boolean rebuildAgain;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejected;
+
+    private volatile MappedRedirectTable table;
+    private String tableName;
+
+    // Writes that reach a table under construction; guarded by 'this'
+    private MappedRedirectTable building;
+    private final Set<String> touchedCodes = new HashSet<>();
+    private final Set<String> removedOwners = new HashSet<>();
+
+    // Wall-clock time from which change stream events have reached the table without a gap
+    private volatile long followingSinceMillis = Long.MAX_VALUE;
+    private volatile boolean following;
+
+    public RedirectTable(MongoTemplate mongoTemplate,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.redirect-table.enabled:false}") boolean enabled,
+                         @Value("${app.redirect-table.path:./data/redirect-table}") Path directory,
+                         @Value("${app.redirect-table.expected-entries:10000000}") long minExpectedEntries,
+                         @Value("${app.redirect-table.max-data-size:4GB}") DataSize maxDataSize,
+                         @Value("${app.redirect-table.max-age:24h}") Duration maxAge) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.minExpectedEntries = minExpectedEntries;
+        this.maxDataBytes = maxDataSize.toBytes();
+        this.maxAge = maxAge;
+        this.hits = Counter.builder("redirect_table.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("redirect_table.lookups").tag("result", "miss").register(meterRegistry);
+        this.rejected = Counter.builder("redirect_table.rejected")
+                .description("Entries not stored because the table or its data file was full")
+                .register(meterRegistry);
+        Gauge.builder("redirect_table.entries", this, RedirectTable::usedSlots).register(meterRegistry);
+    }
+
+    // Maps the table left by the previous run; it is served once the change stream has caught up with it
+    @PostConstruct
+    public void openExisting() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Path pointer = directory.resolve(CURRENT);
+            if (!Files.exists(pointer)) {
+                return;
+            }
+            String name = Files.readString(pointer, StandardCharsets.UTF_8).trim();
+            MappedRedirectTable opened = MappedRedirectTable.open(directory.resolve(name + ".idx"),
+                    directory.resolve(name + ".dat"), maxDataBytes);
+            if (opened.builtAt().plus(maxAge).isBefore(Instant.now())) {
+                log.info("Redirect table {} was built at {}, more than {} ago; it will be rebuilt",
+                        name, opened.builtAt(), maxAge);
+                Files.deleteIfExists(pointer);
+                retire(opened, name);
+                return;
+            }
+            table = opened;
+            tableName = name;
+            log.info("Redirect table {} mapped with {} entries", name, table.usedSlots());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not map the existing redirect table, it will be rebuilt: {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfMissing() {
+        if (enabled && table == null) {
+            rebuildInBackground();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Drops the current table when changes may have been missed, e.g. a change stream that
+     * could not resume. Redirects go through the cache until a fresh table has been built.
+     */
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        MappedRedirectTable previous;
+        String previousName;
+        synchronized (this) {
+            previous = table;
+            previousName = tableName;
+            table = null;
+            tableName = null;
+        }
+        try {
+            // A restart must not map the dropped table again
+            Files.deleteIfExists(directory.resolve(CURRENT));
+        } catch (IOException e) {
+            log.warn("Could not remove the redirect table pointer: {}", e.getMessage());
+        }
+        retire(previous, previousName);
+        rebuildInBackground();
+    }
+
+    /**
+     * Called by MappingChangeListener once its stream has caught up. A stream resumed from a
+     * token has replayed every change since that token; 'tokenTable' is the table the token was
+     * saved for (see coveredTable), so only that table is known to have missed nothing before it.
+     */
+    public void startedFollowing(boolean resumed, String tokenTable) {
+        if (!enabled) {
+            return;
+        }
+        boolean stale;
+        synchronized (this) {
+            if (!resumed) {
+                followingSinceMillis = System.currentTimeMillis();
+            } else if (followingSinceMillis == Long.MAX_VALUE) {
+                // First catch-up in this process: the token carries coverage over from the previous run
+                followingSinceMillis = tableName != null && tableName.equals(tokenTable)
+                        ? Long.MIN_VALUE : System.currentTimeMillis();
+            }
+            following = true;
+            stale = table != null && !covers(table);
+        }
+        if (stale) {
+            log.info("Redirect table {} may have missed changes; rebuilding before it is served", tableName);
+            requestRebuild();
+        }
+    }
+
+    // The stream dropped; a resumed stream picks up where it left off, so coverage is kept
+    public void stoppedFollowing() {
+        following = false;
+    }
+
+    // Name of the current table if every change since it was built has been applied; saved with the resume token
+    public synchronized String coveredTable() {
+        return table != null && covers(table) ? tableName : null;
+    }
+
+    // Null means "not known here": absent, not loaded yet, not covered by the change stream or disabled
+    public CachedMapping get(String shortCode) {
+        MappedRedirectTable current = table;
+        if (current == null || !following || !covers(current)) {
+            return null;
+        }
+        CachedMapping mapping = current.get(shortCode);
+        (mapping != null ? hits : misses).increment();
+        return mapping;
+    }
+
+    // The code now resolves to 'mapping': a link created here, or a change stream event
+    public synchronized void put(String shortCode, CachedMapping mapping) {
+        if (!enabled) {
+            return;
+        }
+        store(table, shortCode, mapping);
+        if (building != null) {
+            touchedCodes.add(shortCode);
+            store(building, shortCode, mapping);
+        }
+    }
+
+    // Rewrites the code only where it still resolves to the same link (updates through any of its codes)
+    public synchronized void replace(String shortCode, CachedMapping mapping) {
+        if (!enabled || shortCode == null) {
+            return;
+        }
+        replaceIn(table, shortCode, mapping);
+        if (building != null) {
+            touchedCodes.add(shortCode);
+            replaceIn(building, shortCode, mapping);
+        }
+    }
+
+    // Removes the code if it resolves to 'urlId', or unconditionally when urlId is null
+    public synchronized void remove(String shortCode, Long urlId) {
+        if (!enabled || shortCode == null) {
+            return;
+        }
+        removeFrom(table, shortCode, urlId);
+        if (building != null) {
+            touchedCodes.add(shortCode);
+            removeFrom(building, shortCode, urlId);
+        }
+    }
+
+    // Account deletion: the codes are not known up front, so this scans the whole table
+    public synchronized void removeOwnedBy(String userId) {
+        if (!enabled) {
+            return;
+        }
+        if (table != null) {
+            table.removeIf(mapping -> userId.equals(mapping.userId()));
+        }
+        if (building != null) {
+            removedOwners.add(userId);
+            building.removeIf(mapping -> userId.equals(mapping.userId()));
+        }
+    }
+
+    /**
+     * Streams short_codes into a new table beside the current one and swaps it in.
+     * Writes arriving meanwhile go to both tables; the codes they touch are skipped by the
+     * load, which may have read an older version of the same document.
+     */
+    @Scheduled(fixedDelayString = "${app.redirect-table.rebuild-interval:6h}",
+            initialDelayString = "${app.redirect-table.rebuild-interval:6h}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildAgain = false;
+        // Everything written after this instant reaches the table as a write or a change stream event
+        Instant builtAt = Instant.now();
+        String name = PREFIX + builtAt.toEpochMilli();
+        MappedRedirectTable next = null;
+        try {
+            Files.createDirectories(directory);
+            deleteStaleFiles();
+
+            long estimated = mongoTemplate.estimatedCount(ShortCode.class);
+            long capacity = MappedRedirectTable.capacityFor(Math.max(minExpectedEntries, estimated * 2));
+            next = MappedRedirectTable.create(directory.resolve(name + ".idx"), directory.resolve(name + ".dat"),
+                    capacity, maxDataBytes, builtAt);
+            synchronized (this) {
+                building = next;
+            }
+
+            Instant now = Instant.now();
+            long loaded = 0;
+            try (Stream<ShortCode> codes = mongoTemplate.stream(new Query(), ShortCode.class)) {
+                for (ShortCode code : (Iterable<ShortCode>) codes::iterator) {
+                    CachedMapping mapping = code.toCachedMapping();
+                    if (!mapping.isExpired(now) && load(next, code.getCode(), mapping)) {
+                        loaded++;
+                    }
+                }
+            }
+
+            next.markReady();
+            Path pointer = directory.resolve(CURRENT + ".tmp");
+            Files.writeString(pointer, name, StandardCharsets.UTF_8);
+            Files.move(pointer, directory.resolve(CURRENT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+
+            MappedRedirectTable previous;
+            String previousName;
+            synchronized (this) {
+                previous = table;
+                previousName = tableName;
+                table = next;
+                tableName = name;
+                clearBuild();
+            }
+            next = null;
+            retire(previous, previousName);
+            log.info("Redirect table {} built with {} entries ({} slots, {} MiB of data)",
+                    name, loaded, table.capacity(), table.dataBytes() / (1024 * 1024));
+        } catch (Exception e) {
+            log.error("Redirect table rebuild failed; keeping the previous table", e);
+            synchronized (this) {
+                clearBuild();
+            }
+            retire(next, name);
+        } finally {
+            rebuilding.set(false);
+        }
+        if (rebuildAgain) {
+            rebuildInBackground();
+        }
+    }
+
+    // Runs a rebuild now, or right after the one in progress, whose snapshot may predate the request
+    private void requestRebuild() {
+        rebuildAgain = true;
+        rebuildInBackground();
+    }
+
+    private boolean covers(MappedRedirectTable target) {
+        return followingSinceMillis <= target.builtAt().toEpochMilli();
+    }
+
+    private void rebuildInBackground() {
+        Thread loader = new Thread(this::rebuild, "redirect-table-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (table != null) {
+            try {
+                table.close();
+            } catch (IOException e) {
+                log.warn("Closing the redirect table failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized boolean load(MappedRedirectTable next, String shortCode, CachedMapping mapping) {
+        if (touchedCodes.contains(shortCode)
+                || (mapping.userId() != null && removedOwners.contains(mapping.userId()))) {
+            return false;
+        }
+        return store(next, shortCode, mapping);
+    }
+
+    private boolean store(MappedRedirectTable target, String shortCode, CachedMapping mapping) {
+        if (target == null) {
+            return false;
+        }
+        if (!target.put(shortCode, mapping)) {
+            // Reads of this code keep falling through to the cache until the next, larger, rebuild
+            target.remove(shortCode);
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void replaceIn(MappedRedirectTable target, String shortCode, CachedMapping mapping) {
+        if (target == null) {
+            return;
+        }
+        CachedMapping current = target.get(shortCode);
+        if (current != null && current.id() == mapping.id()) {
+            store(target, shortCode, mapping);
+        }
+    }
+
+    private static void removeFrom(MappedRedirectTable target, String shortCode, Long urlId) {
+        if (target == null) {
+            return;
+        }
+        CachedMapping current = target.get(shortCode);
+        if (current != null && (urlId == null || current.id() == urlId)) {
+            target.remove(shortCode);
+        }
+    }
+
+    private void clearBuild() {
+        building = null;
+        touchedCodes.clear();
+        removedOwners.clear();
+    }
+
+    private long usedSlots() {
+        MappedRedirectTable current = table;
+        return current != null ? current.usedSlots() : 0;
+    }
+
+    // Leftovers of interrupted builds; the files of the live table are kept
+    private void deleteStaleFiles() throws IOException {
+        String live;
+        synchronized (this) {
+            live = tableName;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.startsWith(PREFIX) && (live == null || !fileName.startsWith(live + "."))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // Readers may still hold the old mapping; it stays valid until collected, even once the files are gone
+    private void retire(MappedRedirectTable old, String name) {
+        if (old == null) {
+            return;
+        }
+        try {
+            old.close();
+            Files.deleteIfExists(directory.resolve(name + ".idx"));
+            Files.deleteIfExists(directory.resolve(name + ".dat"));
+        } catch (IOException e) {
+            log.warn("Could not remove redirect table {}: {}", name, e.getMessage());
+        }
+    }
+}
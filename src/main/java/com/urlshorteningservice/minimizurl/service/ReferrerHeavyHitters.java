@@ -0,0 +1,160 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import com.urlshorteningservice.minimizurl.domain.ReferrerSketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded-memory top referrers per link. Persisted click batches are folded into a
+ * Space-Saving delta per link; a scheduler adds the deltas to this node's summary in
+ * referrer_sketches. Reads merge the node summaries (plus unflushed local deltas), so
+ * answering costs O(nodes x capacity) regardless of how many distinct referrers a link has.
+ */
+@Component
+public class ReferrerHeavyHitters implements ClickBatchListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferrerHeavyHitters.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final int capacity;
+    private final String nodeId;
+
+    // Guarded by 'this': written by the pipeline consumer, swapped out by the flusher
+    private Map<Long, PendingSummary> pending = new HashMap<>();
+
+    private final Counter failures;
+
+    public ReferrerHeavyHitters(MongoTemplate mongoTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.analytics.referrers.capacity:100}") int capacity,
+                                AnalyticsNodeId nodeId) {
+        this.mongoTemplate = mongoTemplate;
+        this.capacity = capacity;
+        this.nodeId = nodeId.value();
+        this.failures = Counter.builder("referrers.sketch.flush.failures").register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void onBatch(List<ClickEvent> batch) {
+        for (ClickEvent event : batch) {
+            if (event.getUrlId() != null) {
+                pendingFor(event.getUrlId(), event.getOwnerId())
+                        .summary.offer(ClickRollupService.referrerOf(event.getReferer()));
+            }
+        }
+    }
+
+    private PendingSummary pendingFor(long urlId, String ownerId) {
+        return pending.computeIfAbsent(urlId, id -> new PendingSummary(ownerId, new SpaceSaving(capacity)));
+    }
+
+    /**
+     * Approximate top referrers. Each count over-estimates the true one by at most its
+     * maxOverestimate; any referrer with more than total / capacity clicks is guaranteed to appear.
+     * Same {_id, count} shape as AnalyticsService.getTopReferrers, plus maxOverestimate.
+     */
+    public List<Map<String, Object>> topReferrers(long urlId, int limit) {
+        SpaceSaving merged = new SpaceSaving(capacity);
+        ReferrerSketch stored = mongoTemplate.findById(urlId, ReferrerSketch.class);
+        if (stored != null) {
+            for (ReferrerSketch.NodeSummary node : stored.getNodes().values()) {
+                merged.merge(fromDocument(node));
+            }
+        }
+        synchronized (this) {
+            PendingSummary local = pending.get(urlId);
+            if (local != null) {
+                merged.merge(local.summary);
+            }
+        }
+
+        return merged.top(limit).stream()
+                .map(entry -> Map.<String, Object>of(
+                        "_id", entry.item(),
+                        "count", entry.count(),
+                        "maxOverestimate", entry.error()))
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.referrers.flush-interval:30s}")
+    public void flush() {
+        Map<Long, PendingSummary> deltas;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            deltas = pending;
+            pending = new HashMap<>();
+        }
+
+        try {
+            // 1. This node's stored summaries for the dirty links; it is their only writer
+            Query existing = new Query(Criteria.where("_id").in(deltas.keySet()));
+            existing.fields().include("nodes." + nodeId);
+            Map<Long, SpaceSaving> summaries = new HashMap<>();
+            for (ReferrerSketch doc : mongoTemplate.find(existing, ReferrerSketch.class)) {
+                ReferrerSketch.NodeSummary node = doc.getNodes().get(nodeId);
+                if (node != null) {
+                    summaries.put(doc.getId(), fromDocument(node));
+                }
+            }
+
+            // 2. Add the deltas and write every summary back in one bulk
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReferrerSketch.class);
+            for (Map.Entry<Long, PendingSummary> delta : deltas.entrySet()) {
+                SpaceSaving summary = summaries.computeIfAbsent(delta.getKey(), id -> new SpaceSaving(capacity));
+                summary.merge(delta.getValue().summary);
+                bulk.upsert(new Query(Criteria.where("_id").is(delta.getKey())), new Update()
+                        .setOnInsert("ownerId", delta.getValue().ownerId)
+                        .set("nodes." + nodeId, toDocument(summary)));
+            }
+            bulk.execute();
+        } catch (Exception e) {
+            // Retry with the next flush; links already written by a partial bulk are counted twice,
+            // which only widens the over-estimate
+            failures.increment();
+            log.warn("Failed to persist referrer summaries for {} links: {}", deltas.size(), e.getMessage());
+            synchronized (this) {
+                deltas.forEach((urlId, delta) -> pendingFor(urlId, delta.ownerId).summary.merge(delta.summary));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void drainOnShutdown() {
+        flush();
+    }
+
+    private SpaceSaving fromDocument(ReferrerSketch.NodeSummary node) {
+        List<SpaceSaving.Entry> entries = node.getCounters().stream()
+                .map(counter -> new SpaceSaving.Entry(counter.getReferrer(), counter.getCount(), counter.getError()))
+                .toList();
+        return SpaceSaving.of(capacity, node.getTotal(), entries);
+    }
+
+    private static ReferrerSketch.NodeSummary toDocument(SpaceSaving summary) {
+        List<ReferrerSketch.Counter> counters = summary.entries().stream()
+                .map(entry -> new ReferrerSketch.Counter(entry.item(), entry.count(), entry.error()))
+                .toList();
+        return new ReferrerSketch.NodeSummary(summary.total(), counters);
+    }
+
+    private record PendingSummary(String ownerId, SpaceSaving summary) {
+    }
+}
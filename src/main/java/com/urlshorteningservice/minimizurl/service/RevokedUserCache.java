@@ -0,0 +1,41 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.urlshorteningservice.minimizurl.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Answers "has this user been deleted?" for stateless JWT authentication.
+ * Each user id is checked against Mongo at most once per TTL, so an account deleted
+ * on another node stops authenticating within that TTL; deletions on this node
+ * take effect immediately through revoke().
+ */
+@Component
+public class RevokedUserCache {
+
+    private final boolean enabled;
+    private final LoadingCache<String, Boolean> revoked;
+
+    public RevokedUserCache(UserRepository userRepository,
+                            @Value("${app.jwt.revocation-check.enabled:true}") boolean enabled,
+                            @Value("${app.jwt.revocation-check.ttl:30s}") Duration ttl,
+                            @Value("${app.jwt.revocation-check.max-size:100000}") long maxSize) {
+        this.enabled = enabled;
+        this.revoked = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build(userId -> !userRepository.existsById(userId));
+    }
+
+    public boolean isRevoked(String userId) {
+        return enabled && revoked.get(userId);
+    }
+
+    public void revoke(String userId) {
+        revoked.put(userId, Boolean.TRUE);
+    }
+}
@@ -1,29 +1,70 @@
 package com.urlshorteningservice.minimizurl.service;
 
 import com.urlshorteningservice.minimizurl.domain.DatabaseSequence;
-import com.urlshorteningservice.minimizurl.repository.DatabaseSequenceRepository;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.time.Instant;
+
 import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
 
 @Service
-@RequiredArgsConstructor
 public class SequenceGeneratorService {
 
-    private final DatabaseSequenceRepository databaseSequenceRepository;
-
     private final MongoOperations mongoOperations;
 
+    private final IdGenerator idGenerator;
+
+    public SequenceGeneratorService(MongoOperations mongoOperations,
+                                    @Value("${app.id.strategy:mongo-sequence}") String strategy,
+                                    @Value("${app.id.block.size:1000}") int blockSize,
+                                    @Value("${app.id.block.prefetch-threshold:0.2}") double prefetchThreshold,
+                                    @Value("${app.id.snowflake.node-id:-1}") long nodeId,
+                                    @Value("${app.id.snowflake.epoch:2025-01-01T00:00:00Z}") Instant epoch,
+                                    @Value("${app.id.snowflake.max-clock-backwards-ms:10}") long maxClockBackwardsMs) {
+        this.mongoOperations = mongoOperations;
+        this.idGenerator = switch (strategy) {
+            // One findAndModify per id: dense ids, one round trip per link
+            case "mongo-sequence" -> new IdGenerator() {
+                @Override
+                public long nextId(String seqName) {
+                    return incrementSequence(seqName, 1);
+                }
+
+                @Override
+                public long[] nextIds(String seqName, int count) {
+                    return count == 0 ? new long[0] : IdGenerator.rangeEndingAt(incrementSequence(seqName, count), count);
+                }
+            };
+            // Ranges leased with one $inc each, served from memory
+            case "mongo-block" -> new BlockLeasingIdGenerator(this::incrementSequence, blockSize, prefetchThreshold);
+            // No database involvement at all; requires a unique node id per instance
+            case "snowflake" -> new SnowflakeIdGenerator(nodeId, epoch, maxClockBackwardsMs);
+            default -> throw new IllegalArgumentException("Unknown app.id.strategy: " + strategy
+                    + " (expected mongo-sequence, mongo-block or snowflake)");
+        };
+    }
+
     public long generateSequence(String seqName){
+        return idGenerator.nextId(seqName);
+    }
+
+    // 'count' unique ids; a single round trip on the Mongo strategies, none for snowflake
+    public long[] generateSequences(String seqName, int count) {
+        return idGenerator.nextIds(seqName, count);
+    }
+
+    // Atomically advances the counter by 'count' and returns the new (highest reserved) value
+    private long incrementSequence(String seqName, int count) {
         // 1. Create a query to find the specific sequence by ID
         Query query = new Query(Criteria.where("_id").is(seqName));
 
-        // 2. Define the update: increment the 'seq' field by 1
-        Update update = new Update().inc("seq", 1);
+        // 2. Define the update: increment the 'seq' field by count
+        Update update = new Update().inc("seq", count);
 
         // 3. Execute findAndModify
         DatabaseSequence counter = mongoOperations.findAndModify(
@@ -33,6 +74,6 @@ public class SequenceGeneratorService {
                 DatabaseSequence.class
         );
 
-        return (counter != null) ? counter.getSeq() : 1;
+        return (counter != null) ? counter.getSeq() : count;
     }
 }
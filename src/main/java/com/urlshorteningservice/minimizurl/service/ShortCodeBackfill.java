@@ -0,0 +1,125 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * One-off population of short_codes from the existing url_mappings.
+ * Custom codes are written first, then generated codes, and every write is an insert-only
+ * upsert: when a legacy custom code equals another link's generated code the custom link keeps
+ * it, and codes claimed by live traffic are never overwritten. Safe to re-run.
+ * Enable on a single node for one start-up, then switch it off together with
+ * app.short-codes.legacy-lookup.
+ */
+@Component
+public class ShortCodeBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ShorteningService shorteningService;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public ShortCodeBackfill(MongoTemplate mongoTemplate,
+                             ShorteningService shorteningService,
+                             @Value("${app.short-codes.backfill.enabled:false}") boolean enabled,
+                             @Value("${app.short-codes.backfill.batch-size:1000}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.shorteningService = shorteningService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            backfill();
+        }
+    }
+
+    public void backfill() {
+        log.info("Backfilling short_codes from url_mappings");
+        warnAboutReservedCodes();
+
+        // 1. Custom codes take precedence over colliding generated codes
+        long custom = copy(Criteria.where("customCode").ne(null), UrlMapping::getCustomCode);
+
+        // 2. Every mapping is also reachable by the base62 form of its id
+        long generated = copy(new Criteria(), mapping -> shorteningService.encode(mapping.getId()));
+
+        log.info("Short code backfill done: {} custom and {} generated codes processed", custom, generated);
+    }
+
+    // Links created before codes were reserved; GET /mini/{code} now reaches the route, not the link
+    private void warnAboutReservedCodes() {
+        Query query = new Query(Criteria.where("customCode").in(ShortCodeIndex.RESERVED_CODES));
+        query.fields().include("_id", "customCode", "userId");
+        for (UrlMapping mapping : mongoTemplate.find(query, UrlMapping.class)) {
+            log.warn("Link {} (owner {}) uses the reserved custom code '{}' and cannot be redirected to; "
+                    + "it is still reachable by its generated code {}", mapping.getId(), mapping.getUserId(),
+                    mapping.getCustomCode(), shorteningService.encode(mapping.getId()));
+        }
+    }
+
+    private long copy(Criteria criteria, Function<UrlMapping, String> codeOf) {
+        Query query = new Query(criteria);
+        query.fields().include("_id", "customCode", "originalUrl", "userId", "expirationDate");
+
+        long processed = 0;
+        List<UrlMapping> batch = new ArrayList<>(batchSize);
+        try (Stream<UrlMapping> mappings = mongoTemplate.stream(query, UrlMapping.class)) {
+            for (UrlMapping mapping : (Iterable<UrlMapping>) mappings::iterator) {
+                batch.add(mapping);
+                if (batch.size() == batchSize) {
+                    write(batch, codeOf);
+                    processed += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        write(batch, codeOf);
+        return processed + batch.size();
+    }
+
+    private void write(List<UrlMapping> batch, Function<UrlMapping, String> codeOf) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ShortCode.class);
+        for (UrlMapping mapping : batch) {
+            ShortCode entry = ShortCode.of(codeOf.apply(mapping), mapping);
+            bulk.upsert(new Query(Criteria.where("_id").is(entry.getCode())), new Update()
+                    .setOnInsert("urlId", entry.getUrlId())
+                    .setOnInsert("originalUrl", entry.getOriginalUrl())
+                    .setOnInsert("userId", entry.getUserId())
+                    .setOnInsert("expirationDate", entry.getExpirationDate()));
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // Upserts racing a live claim of the same code lose with a duplicate key; the claim stands
+            long failures = e.getErrors().stream().filter(error -> error.getCode() != 11000).count();
+            if (failures > 0) {
+                log.warn("Short code backfill: {} of {} upserts failed", failures, batch.size());
+            }
+        }
+    }
+}
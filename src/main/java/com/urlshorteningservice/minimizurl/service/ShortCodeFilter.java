@@ -0,0 +1,227 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Sheds lookups for codes that cannot exist.
+ * A Bloom filter over every mapping id and custom code answers "definitely absent"
+ * without a database call; a short-lived negative cache absorbs repeated probes of
+ * codes that passed the filter (false positives) but were not found in Mongo.
+ * Until the first load completes, every code is treated as possibly present.
+ * Links created on other nodes only reach the filter through MappingChangeListener, so the
+ * filter's "absent" is trusted only while that listener has been following since before the
+ * filter was loaded, or within 'visibility-window' of the load. Otherwise the database decides.
+ */
+@Component
+public class ShortCodeFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShortCodeFilter.class);
+
+    // Registration counters, striped by code as in UrlMappingCache; a collision only skips a miss
+    private static final int REGISTRATION_STRIPES = 4096;
+
+    private final MongoTemplate mongoTemplate;
+    private final ShorteningService shorteningService;
+    private final boolean enabled;
+    private final long minExpectedInsertions;
+    private final double falsePositiveRate;
+    private final long maxBytes;
+
+    private final Cache<String, Boolean> negativeCache;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLongArray registrations = new AtomicLongArray(REGISTRATION_STRIPES);
+    private final Counter shed;
+
+    // The filter and when the scan that filled it began; codes created elsewhere after that are missing
+    private record Loaded(BloomFilter bloom, long startedNanos) {
+    }
+
+    private final long visibilityWindowNanos;
+    private volatile Loaded filter;
+    private volatile BloomFilter building;
+    private volatile boolean following;
+    private volatile long followingSinceNanos = Long.MAX_VALUE;
+
+    public ShortCodeFilter(MongoTemplate mongoTemplate,
+                           ShorteningService shorteningService,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.shortcode-filter.enabled:true}") boolean enabled,
+                           @Value("${app.shortcode-filter.expected-insertions:1000000}") long minExpectedInsertions,
+                           @Value("${app.shortcode-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                           @Value("${app.shortcode-filter.max-memory:64MB}") DataSize maxMemory,
+                           @Value("${app.shortcode-filter.negative-cache.max-size:100000}") long negativeCacheSize,
+                           @Value("${app.shortcode-filter.negative-cache.ttl:30s}") Duration negativeCacheTtl,
+                           @Value("${app.shortcode-filter.visibility-window:5s}") Duration visibilityWindow) {
+        this.mongoTemplate = mongoTemplate;
+        this.shorteningService = shorteningService;
+        this.enabled = enabled;
+        this.minExpectedInsertions = minExpectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxBytes = maxMemory.toBytes();
+        this.visibilityWindowNanos = visibilityWindow.toNanos();
+        this.negativeCache = Caffeine.newBuilder()
+                .maximumSize(negativeCacheSize)
+                .expireAfterWrite(negativeCacheTtl)
+                .build();
+        this.shed = Counter.builder("shortcode.filter.shed")
+                .description("Lookups answered as absent without querying MongoDB")
+                .register(meterRegistry);
+    }
+
+    public boolean isDefinitelyAbsent(String shortCode) {
+        if (!enabled) {
+            return false;
+        }
+        if (negativeCache.getIfPresent(shortCode) != null) {
+            shed.increment();
+            return true;
+        }
+        Loaded current = filter;
+        if (current == null || !seesAllCreations(current) || current.bloom().mightContain(shortCode)) {
+            return false;
+        }
+        // Non-canonical codes can only be custom codes, which the check above already covered
+        if (shorteningService.isValidGeneratedCode(shortCode)
+                && current.bloom().mightContain(shorteningService.decode(shortCode))) {
+            return false;
+        }
+        shed.increment();
+        return true;
+    }
+
+    /**
+     * Set by MappingChangeListener once its stream has caught up, and cleared when it drops.
+     * 'resumed' means the stream replayed everything since it was last open, so no creation
+     * elsewhere was missed in between.
+     */
+    public void setFollowing(boolean following, boolean resumed) {
+        if (following && (!resumed || followingSinceNanos == Long.MAX_VALUE)) {
+            followingSinceNanos = System.nanoTime();
+        }
+        this.following = following;
+    }
+
+    private boolean seesAllCreations(Loaded current) {
+        if (following && followingSinceNanos - current.startedNanos() <= 0) {
+            return true;
+        }
+        return System.nanoTime() - current.startedNanos() < visibilityWindowNanos;
+    }
+
+    // Taken before the database lookup whose miss is later passed to recordMiss
+    public long missStamp(String shortCode) {
+        return registrations.get(stripe(shortCode));
+    }
+
+    /**
+     * Called after Mongo confirmed the code does not exist. The miss is dropped if the code may
+     * have been registered since 'stamp' was taken: the lookup may predate that creation.
+     */
+    public void recordMiss(String shortCode, long stamp) {
+        if (enabled) {
+            // Checked under the entry's lock: a register that bumped first wins, one that bumps later removes this
+            negativeCache.asMap().compute(shortCode,
+                    (code, current) -> missStamp(code) == stamp ? Boolean.TRUE : current);
+        }
+    }
+
+    // Called whenever a mapping is created so the new code is reachable immediately
+    public void register(long id, String customCode) {
+        unmiss(shorteningService.encode(id));
+        if (customCode != null) {
+            unmiss(customCode);
+        }
+        Loaded current = filter;
+        addTo(current != null ? current.bloom() : null, id, customCode);
+        addTo(building, id, customCode);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuildInBackground();
+    }
+
+    // Also used when registrations may have been missed (see MappingChangeListener)
+    public void rebuildInBackground() {
+        if (enabled) {
+            Thread loader = new Thread(this::rebuild, "shortcode-filter-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    // Periodic rebuild picks up links created on other nodes and resizes the filter as the table grows
+    @Scheduled(fixedDelayString = "${app.shortcode-filter.rebuild-interval:30m}",
+            initialDelayString = "${app.shortcode-filter.rebuild-interval:30m}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            long estimated = mongoTemplate.estimatedCount(UrlMapping.class);
+            long expected = Math.max(minExpectedInsertions, estimated * 2);
+            BloomFilter next = BloomFilter.create(expected, falsePositiveRate, maxBytes);
+            building = next;
+
+            Query query = new Query();
+            query.fields().include("_id").include("customCode");
+            long loaded = 0;
+            try (Stream<UrlMapping> mappings = mongoTemplate.stream(query, UrlMapping.class)) {
+                for (UrlMapping mapping : (Iterable<UrlMapping>) mappings::iterator) {
+                    addTo(next, mapping.getId(), mapping.getCustomCode());
+                    loaded++;
+                }
+            }
+
+            filter = new Loaded(next, started);
+            log.info("Short code filter loaded {} mappings into {} KiB (expected false-positive rate {})",
+                    loaded, next.sizeInBytes() / 1024, String.format("%.4f", next.expectedFalsePositiveRate(loaded)));
+        } catch (Exception e) {
+            log.error("Short code filter rebuild failed; keeping the previous filter", e);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    // Bumped before the entry goes, so a miss still in flight sees it when it tries to store
+    private void unmiss(String shortCode) {
+        registrations.incrementAndGet(stripe(shortCode));
+        negativeCache.invalidate(shortCode);
+    }
+
+    private static int stripe(String shortCode) {
+        int hash = shortCode.hashCode();
+        return (hash ^ (hash >>> 16)) & (REGISTRATION_STRIPES - 1);
+    }
+
+    private static void addTo(BloomFilter target, long id, String customCode) {
+        if (target == null) {
+            return;
+        }
+        target.put(id);
+        if (customCode != null) {
+            target.put(customCode);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains short_codes, the code -> link index every lookup resolves through.
+ * A code is claimed (inserted) before the mapping that uses it is written; the unique _id
+ * decides races between generated and custom codes, and a claim is released again if the
+ * mapping write fails.
+ * While legacy lookup is on, url_mappings documents not yet backfilled still answer to their
+ * generated and custom codes, so every claim is also checked against them.
+ */
+@Component
+public class ShortCodeIndex {
+
+    // First path segments of the literal /mini routes; a link under one of these would never be reached
+    public static final Set<String> RESERVED_CODES = Set.of("my-links", "shorten", "stats");
+
+    private final MongoTemplate mongoTemplate;
+    private final ShorteningService shorteningService;
+    private final boolean legacyLookup;
+
+    public ShortCodeIndex(MongoTemplate mongoTemplate,
+                          ShorteningService shorteningService,
+                          @Value("${app.short-codes.legacy-lookup:true}") boolean legacyLookup) {
+        this.mongoTemplate = mongoTemplate;
+        this.shorteningService = shorteningService;
+        this.legacyLookup = legacyLookup;
+    }
+
+    // Whether misses fall back to the $or query on url_mappings (until ShortCodeBackfill has run)
+    public boolean isLegacyLookup() {
+        return legacyLookup;
+    }
+
+    public static boolean isReserved(String code) {
+        return RESERVED_CODES.contains(code);
+    }
+
+    public ShortCode resolve(String code) {
+        return mongoTemplate.findById(code, ShortCode.class);
+    }
+
+    // False when the code already belongs to a link or is reserved for a route
+    public boolean claim(String code, UrlMapping mapping) {
+        if (isReserved(code)) {
+            return false;
+        }
+        if (legacyLookup && !legacyOwned(List.of(code)).isEmpty()) {
+            return false;
+        }
+        try {
+            mongoTemplate.insert(ShortCode.of(code, mapping));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // Unordered: returns the positions that could not be claimed, everything else is written
+    public Set<Integer> claimAll(List<ShortCode> codes) {
+        Set<Integer> rejected = new HashSet<>();
+        if (codes.isEmpty()) {
+            return rejected;
+        }
+        Set<String> legacy = legacyLookup
+                ? legacyOwned(codes.stream().map(ShortCode::getCode).toList()) : Set.of();
+        // positions[k] is the index in 'codes' of the k-th insert
+        List<ShortCode> inserts = new ArrayList<>(codes.size());
+        List<Integer> positions = new ArrayList<>(codes.size());
+        for (int i = 0; i < codes.size(); i++) {
+            String code = codes.get(i).getCode();
+            if (legacy.contains(code) || isReserved(code)) {
+                rejected.add(i);
+            } else {
+                inserts.add(codes.get(i));
+                positions.add(i);
+            }
+        }
+        if (inserts.isEmpty()) {
+            return rejected;
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ShortCode.class)
+                    .insert(inserts)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                rejected.add(positions.get(error.getIndex()));
+            }
+        }
+        return rejected;
+    }
+
+    // Subset of 'codes' already claimed, in one query
+    public Set<String> taken(Collection<String> codes) {
+        Set<String> taken = new HashSet<>();
+        if (codes.isEmpty()) {
+            return taken;
+        }
+        Query query = new Query(Criteria.where("_id").in(codes));
+        query.fields().include("_id");
+        mongoTemplate.find(query, ShortCode.class).forEach(code -> taken.add(code.getCode()));
+        if (legacyLookup) {
+            taken.addAll(legacyOwned(codes));
+        }
+        return taken;
+    }
+
+    // Subset of 'codes' a url_mappings document answers to, by the base62 form of its _id or its customCode
+    private Set<String> legacyOwned(Collection<String> codes) {
+        List<Long> ids = codes.stream()
+                .filter(shorteningService::isValidGeneratedCode)
+                .map(shorteningService::decode)
+                .toList();
+        Criteria criteria = Criteria.where("customCode").in(codes);
+        if (!ids.isEmpty()) {
+            criteria = new Criteria().orOperator(Criteria.where("_id").in(ids), criteria);
+        }
+        Query query = new Query(criteria);
+        query.fields().include("_id", "customCode");
+
+        Set<String> owned = new HashSet<>();
+        for (UrlMapping mapping : mongoTemplate.find(query, UrlMapping.class)) {
+            String generated = shorteningService.encode(mapping.getId());
+            if (codes.contains(generated)) {
+                owned.add(generated);
+            }
+            if (mapping.getCustomCode() != null && codes.contains(mapping.getCustomCode())) {
+                owned.add(mapping.getCustomCode());
+            }
+        }
+        return owned;
+    }
+
+    public void release(Collection<String> codes) {
+        if (!codes.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(codes)), ShortCode.class);
+        }
+    }
+
+    // Mirrors an edited mapping onto every code that resolves to it
+    public void update(UrlMapping mapping) {
+        mongoTemplate.updateMulti(new Query(Criteria.where("urlId").is(mapping.getId())),
+                new Update().set("originalUrl", mapping.getOriginalUrl())
+                        .set("expirationDate", mapping.getExpirationDate()),
+                ShortCode.class);
+    }
+
+    public void remove(long urlId) {
+        mongoTemplate.remove(new Query(Criteria.where("urlId").is(urlId)), ShortCode.class);
+    }
+
+    // Sliding expiry from the click buffer; $max so an out-of-order flush never shortens it
+    public void extendExpiry(Map<Long, Instant> expiries) {
+        if (expiries.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ShortCode.class);
+        expiries.forEach((urlId, expiry) -> bulk.updateMulti(new Query(Criteria.where("urlId").is(urlId)),
+                new Update().max("expirationDate", expiry)));
+        bulk.execute();
+    }
+}
@@ -2,29 +2,90 @@ package com.urlshorteningservice.minimizurl.service;
 
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+
 @Service
 public class ShorteningService {
 
-    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final char[] BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    // 62^11 > Long.MAX_VALUE, so no non-negative long needs more than 11 digits
+    private static final int MAX_LENGTH = 11;
+
+    // Reverse lookup: ASCII code point -> digit value, -1 for characters outside the alphabet
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < BASE62.length; i++) {
+            DIGITS[BASE62[i]] = (byte) i;
+        }
+    }
 
     public String encode(long id){
-        StringBuilder shortUrl = new StringBuilder();
-        if(id == 0){
-            return String.valueOf(BASE62.charAt(0));
+        if (id < 0) {
+            throw new IllegalArgumentException("Cannot encode negative id: " + id);
+        }
+        if (id == 0) {
+            return "0";
         }
-        while(id > 0){
-            int rem = (int)(id % 62);
-            shortUrl.insert(0, BASE62.charAt(rem));
+        // Fill from the right so no shifting is needed
+        char[] buffer = new char[MAX_LENGTH];
+        int pos = MAX_LENGTH;
+        while (id > 0) {
+            buffer[--pos] = BASE62[(int) (id % 62)];
             id /= 62;
         }
-        return shortUrl.toString();
+        return new String(buffer, pos, MAX_LENGTH - pos);
     }
 
     public long decode(String shortUrl){
+        if (shortUrl == null || shortUrl.isEmpty() || shortUrl.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Not a base62 code: " + shortUrl);
+        }
+        long id = parse(shortUrl);
+        if (id < 0) {
+            throw new IllegalArgumentException("Invalid base62 code: " + shortUrl);
+        }
+        return id;
+    }
+
+    /**
+     * True only for codes encode() can produce: 1-11 base62 digits, no leading zero,
+     * value within a long. Anything else can only be a custom code.
+     */
+    public boolean isValidGeneratedCode(String code) {
+        int length = code.length();
+        if (length == 0 || length > MAX_LENGTH || (length > 1 && code.charAt(0) == '0')) {
+            return false;
+        }
+        return parse(code) >= 0;
+    }
+
+    // Returns -1 for an invalid character or a value beyond Long.MAX_VALUE; length is 1..11
+    private static long parse(String code) {
+        int length = code.length();
+        // Ten digits (62^10 < 2^63) cannot overflow, so only an eleventh needs a range check
+        int unchecked = Math.min(length, MAX_LENGTH - 1);
         long id = 0;
-        for(int i = 0; i < shortUrl.length(); i++){
-            id = id * 62 + BASE62.indexOf(shortUrl.charAt(i));
+        for (int i = 0; i < unchecked; i++) {
+            int digit = digit(code.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            id = id * 62 + digit;
+        }
+        if (length == MAX_LENGTH) {
+            int digit = digit(code.charAt(MAX_LENGTH - 1));
+            if (digit < 0 || id > (Long.MAX_VALUE - digit) / 62) {
+                return -1;
+            }
+            id = id * 62 + digit;
         }
         return id;
     }
+
+    private static int digit(char c) {
+        return c < 128 ? DIGITS[c] : -1;
+    }
 }
@@ -0,0 +1,85 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Per-key deduplication of concurrent loads. The first caller for a key runs the loader on its
+ * own thread; callers arriving while it is in flight wait on the same future and receive the
+ * same value, or the same exception. Nothing is cached: the entry is removed as soon as the
+ * load finishes, so later callers start a fresh load.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutNanos;
+    private final Counter issued;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, Duration waitTimeout, MeterRegistry meterRegistry) {
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.issued = Counter.builder(name + ".lookups")
+                .description("Lookups executed against the backing store")
+                .tag("outcome", "issued")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder(name + ".lookups")
+                .description("Lookups answered by joining one already in flight")
+                .tag("outcome", "coalesced")
+                .register(meterRegistry);
+        meterRegistry.gauge(name + ".lookups.in_flight", inFlight, ConcurrentHashMap::size);
+    }
+
+    public V load(K key, Function<K, V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return await(key, existing);
+        }
+
+        issued.increment();
+        try {
+            V value = loader.apply(key);
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Waiters give up after the timeout; the leader keeps running and later callers may still join it
+    private V await(K key, CompletableFuture<V> pending) {
+        try {
+            return pending.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Lookup for " + key + " failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Lookup for " + key + " timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for lookup of " + key);
+        }
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+}
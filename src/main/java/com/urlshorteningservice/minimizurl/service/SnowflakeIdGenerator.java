@@ -0,0 +1,87 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import java.time.Instant;
+import java.util.function.LongSupplier;
+
+/**
+ * Coordination-free 63-bit ids: 41 bits of milliseconds since a custom epoch,
+ * 10 bits of node id and a 12-bit per-millisecond counter. No database call is made.
+ * Ids stay positive, so ShorteningService encodes them to at most 11 base62
+ * characters (10 for the first ~27 years after the epoch).
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    static final int NODE_BITS = 10;
+    static final int COUNTER_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long MAX_COUNTER = (1L << COUNTER_BITS) - 1;
+    static final long MAX_TIMESTAMP = (1L << 41) - 1;
+
+    private final long nodeId;
+    private final long epochMillis;
+    private final long maxClockBackwardsMillis;
+    private final LongSupplier clock;
+
+    private long lastTimestamp = -1;
+    private long counter;
+
+    public SnowflakeIdGenerator(long nodeId, Instant epoch, long maxClockBackwardsMillis) {
+        this(nodeId, epoch, maxClockBackwardsMillis, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, Instant epoch, long maxClockBackwardsMillis, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException(
+                    "app.id.snowflake.node-id must be set to a unique value in [0, " + MAX_NODE_ID + "] per node");
+        }
+        this.nodeId = nodeId;
+        this.epochMillis = epoch.toEpochMilli();
+        this.maxClockBackwardsMillis = maxClockBackwardsMillis;
+        this.clock = clock;
+    }
+
+    // The sequence name is irrelevant: ids are unique across all sequences and nodes
+    @Override
+    public synchronized long nextId(String sequenceName) {
+        long now = currentTimestamp();
+
+        if (now < lastTimestamp) {
+            // Clock regression (NTP step, VM migration): wait out small drifts, refuse large ones
+            long drift = lastTimestamp - now;
+            if (drift > maxClockBackwardsMillis) {
+                throw new IllegalStateException("Clock moved backwards by " + drift + " ms; refusing to generate ids");
+            }
+            now = waitUntilAfter(lastTimestamp - 1);
+        }
+
+        if (now == lastTimestamp) {
+            counter = (counter + 1) & MAX_COUNTER;
+            if (counter == 0) {
+                // 4096 ids issued this millisecond; spin into the next one
+                now = waitUntilAfter(lastTimestamp);
+            }
+        } else {
+            counter = 0;
+        }
+
+        lastTimestamp = now;
+        return (now << (NODE_BITS + COUNTER_BITS)) | (nodeId << COUNTER_BITS) | counter;
+    }
+
+    private long currentTimestamp() {
+        long timestamp = clock.getAsLong() - epochMillis;
+        if (timestamp < 0 || timestamp > MAX_TIMESTAMP) {
+            throw new IllegalStateException("Current time is outside the range of app.id.snowflake.epoch");
+        }
+        return timestamp;
+    }
+
+    private long waitUntilAfter(long timestamp) {
+        long now = currentTimestamp();
+        while (now <= timestamp) {
+            Thread.onSpinWait();
+            now = currentTimestamp();
+        }
+        return now;
+    }
+}
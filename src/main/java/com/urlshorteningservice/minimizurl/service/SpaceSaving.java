@@ -0,0 +1,127 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Space-Saving heavy-hitters summary over at most 'capacity' counters.
+ * Every item whose true frequency exceeds N / capacity (N = total count offered) is
+ * guaranteed to be tracked. A tracked item's count over-estimates its true frequency by
+ * at most its error, which is itself at most N / capacity. Summaries merge (Agarwal et al.,
+ * "Mergeable Summaries") with the same guarantee over the combined stream, so per-node and
+ * per-flush summaries can be added together. Not thread-safe.
+ */
+public final class SpaceSaving {
+
+    public record Entry(String item, long count, long error) {
+    }
+
+    private final int capacity;
+    private final Map<String, long[]> counters; // item -> {count, error}
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String item) {
+        offer(item, 1);
+    }
+
+    public void offer(String item, long increment) {
+        total += increment;
+        long[] counter = counters.get(item);
+        if (counter != null) {
+            counter[0] += increment;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(item, new long[]{increment, 0});
+            return;
+        }
+        // Evict the smallest counter; the newcomer inherits its count as error
+        Map.Entry<String, long[]> min = minEntry();
+        counters.remove(min.getKey());
+        long floor = min.getValue()[0];
+        counters.put(item, new long[]{floor + increment, floor});
+    }
+
+    public void merge(SpaceSaving other) {
+        long ourFloor = floor();
+        long theirFloor = other.floor();
+        Set<String> items = new HashSet<>(counters.keySet());
+        items.addAll(other.counters.keySet());
+
+        // An item missing from a full summary may have occurred up to that summary's floor
+        List<Entry> merged = new ArrayList<>(items.size());
+        for (String item : items) {
+            long[] ours = counters.get(item);
+            long[] theirs = other.counters.get(item);
+            long count = (ours != null ? ours[0] : ourFloor) + (theirs != null ? theirs[0] : theirFloor);
+            long error = (ours != null ? ours[1] : ourFloor) + (theirs != null ? theirs[1] : theirFloor);
+            merged.add(new Entry(item, count, error));
+        }
+        merged.sort(Comparator.comparingLong(Entry::count).reversed());
+
+        counters.clear();
+        for (Entry entry : merged.subList(0, Math.min(capacity, merged.size()))) {
+            counters.put(entry.item(), new long[]{entry.count(), entry.error()});
+        }
+        total += other.total;
+    }
+
+    // Largest counts first
+    public List<Entry> top(int limit) {
+        List<Entry> entries = entries();
+        entries.sort(Comparator.comparingLong(Entry::count).reversed()
+                .thenComparing(Entry::item));
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(counters.size());
+        counters.forEach((item, counter) -> entries.add(new Entry(item, counter[0], counter[1])));
+        return entries;
+    }
+
+    public static SpaceSaving of(int capacity, long total, List<Entry> entries) {
+        SpaceSaving summary = new SpaceSaving(capacity);
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(Entry::count).reversed());
+        // Stored with a larger capacity than configured now: keep the heaviest
+        for (Entry entry : sorted.subList(0, Math.min(capacity, sorted.size()))) {
+            summary.counters.put(entry.item(), new long[]{entry.count(), entry.error()});
+        }
+        summary.total = total;
+        return summary;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    // Zero until the summary is full; afterwards the count any untracked item may have reached
+    private long floor() {
+        return counters.size() < capacity ? 0 : minEntry().getValue()[0];
+    }
+
+    private Map.Entry<String, long[]> minEntry() {
+        Map.Entry<String, long[]> min = null;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (min == null || entry.getValue()[0] < min.getValue()[0]) {
+                min = entry;
+            }
+        }
+        return min;
+    }
+}
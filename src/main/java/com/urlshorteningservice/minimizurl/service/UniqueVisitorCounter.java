@@ -0,0 +1,216 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.VisitorSketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Approximate unique visitors per link, per UTC day and all time, using HyperLogLog.
+ * Redirects only add a hash to an in-memory sketch; a scheduler merges the dirty sketches
+ * into this node's entry of the matching visitor_sketches documents. Reads merge every
+ * node's entry, and a window of days is the merge of its day sketches, so answers cost
+ * O(days x nodes) 2 KiB merges at most, independent of traffic.
+ */
+@Component
+public class UniqueVisitorCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(UniqueVisitorCounter.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final String nodeId;
+    private final Duration dayRetention;
+
+    private volatile ConcurrentHashMap<String, PendingSketch> pending = new ConcurrentHashMap<>();
+
+    // Swapped out at the previous flush; re-written once in case a redirect raced the swap
+    private Map<String, PendingSketch> retired = Map.of();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter failures;
+
+    public UniqueVisitorCounter(MongoTemplate mongoTemplate,
+                                MeterRegistry meterRegistry,
+                                AnalyticsNodeId nodeId,
+                                @Value("${app.analytics.visitors.day-retention:30d}") Duration dayRetention) {
+        this.mongoTemplate = mongoTemplate;
+        this.nodeId = nodeId.value();
+        this.dayRetention = dayRetention;
+        this.failures = Counter.builder("visitors.sketch.flush.failures").register(meterRegistry);
+        meterRegistry.gauge("visitors.sketch.pending", this, counter -> counter.pending.size());
+    }
+
+    // Signed-in visitors count by user id; guests by a hash of address and user agent, never stored raw
+    public static String visitorKey(String visitorId, String clientAddress, String userAgent) {
+        if (visitorId != null && !"GUEST".equals(visitorId)) {
+            return "u:" + visitorId;
+        }
+        return "g:" + clientAddress + "|" + userAgent;
+    }
+
+    public void record(long urlId, String ownerId, String visitorKey) {
+        long hash = BloomFilter.hash64(visitorKey);
+        String day = LocalDate.now(ZoneOffset.UTC).toString();
+        ConcurrentHashMap<String, PendingSketch> current = pending;
+        sketchFor(current, urlId, day, ownerId).offer(hash);
+        sketchFor(current, urlId, VisitorSketch.ALL_TIME, ownerId).offer(hash);
+    }
+
+    private static PendingSketch sketchFor(Map<String, PendingSketch> sketches, long urlId, String day, String ownerId) {
+        return sketches.computeIfAbsent(sketchId(urlId, day), id -> new PendingSketch(urlId, day, ownerId));
+    }
+
+    static String sketchId(long urlId, String day) {
+        return urlId + ":" + day;
+    }
+
+    public long uniqueVisitors(long urlId) {
+        return merged(List.of(sketchId(urlId, VisitorSketch.ALL_TIME))).estimate();
+    }
+
+    // Distinct visitors over the UTC days [from, to], not the sum of the daily counts
+    public long uniqueVisitors(long urlId, LocalDate from, LocalDate to) {
+        List<String> ids = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            ids.add(sketchId(urlId, day.toString()));
+        }
+        return merged(ids).estimate();
+    }
+
+    private HyperLogLog merged(List<String> ids) {
+        HyperLogLog union = new HyperLogLog();
+        for (VisitorSketch doc : mongoTemplate.find(new Query(Criteria.where("_id").in(ids)), VisitorSketch.class)) {
+            for (byte[] sketch : doc.getNodes().values()) {
+                union.merge(HyperLogLog.fromBytes(sketch));
+            }
+        }
+        // Include what this node has not flushed yet, so a visit shows up immediately
+        for (String id : ids) {
+            PendingSketch local = pending.get(id);
+            if (local != null) {
+                union.merge(local.sketch);
+            }
+        }
+        return union;
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.visitors.flush-interval:10s}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<String, PendingSketch> swapped = pending;
+            pending = new ConcurrentHashMap<>();
+
+            List<PendingSketch> toWrite = new ArrayList<>(swapped.values());
+            for (PendingSketch late : retired.values()) {
+                if (late.dirty) {
+                    toWrite.add(late);
+                }
+            }
+            retired = swapped;
+            write(toWrite);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void drainOnShutdown() {
+        flush();
+        flush();
+    }
+
+    // Read this node's stored entries, merge, write back: this node is the only writer of its entries
+    private void write(List<PendingSketch> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        Map<String, HyperLogLog> merged = new HashMap<>();
+        for (PendingSketch sketch : sketches) {
+            sketch.dirty = false;
+            merged.computeIfAbsent(sketch.id(), id -> new HyperLogLog()).merge(sketch.sketch);
+        }
+        try {
+            Query existing = new Query(Criteria.where("_id").in(merged.keySet()));
+            existing.fields().include("nodes." + nodeId);
+            for (VisitorSketch doc : mongoTemplate.find(existing, VisitorSketch.class)) {
+                byte[] stored = doc.getNodes().get(nodeId);
+                if (stored != null) {
+                    merged.get(doc.getId()).merge(HyperLogLog.fromBytes(stored));
+                }
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, VisitorSketch.class);
+            for (PendingSketch sketch : sketches) {
+                HyperLogLog union = merged.remove(sketch.id());
+                if (union == null) {
+                    continue; // Same id queued twice (current and retired); already added
+                }
+                Update update = new Update()
+                        .setOnInsert("urlId", sketch.urlId)
+                        .setOnInsert("day", sketch.day)
+                        .setOnInsert("ownerId", sketch.ownerId)
+                        .set("nodes." + nodeId, union.toBytes());
+                // Day sketches go with the TTL index; the all-time sketch is kept with the link
+                if (!VisitorSketch.ALL_TIME.equals(sketch.day)) {
+                    update.set("expiresAt", LocalDate.parse(sketch.day).plusDays(1)
+                            .atStartOfDay(ZoneOffset.UTC).toInstant().plus(dayRetention));
+                }
+                bulk.upsert(new Query(Criteria.where("_id").is(sketch.id())), update);
+            }
+            bulk.execute();
+        } catch (Exception e) {
+            // Put the sketches back; merging them again later is harmless
+            failures.increment();
+            log.warn("Failed to persist {} visitor sketches: {}", sketches.size(), e.getMessage());
+            for (PendingSketch sketch : sketches) {
+                sketchFor(pending, sketch.urlId, sketch.day, sketch.ownerId).sketch.merge(sketch.sketch);
+                pending.get(sketch.id()).dirty = true;
+            }
+        }
+    }
+
+    private static final class PendingSketch {
+
+        private final long urlId;
+        private final String day;
+        private final String ownerId;
+        private final HyperLogLog sketch = new HyperLogLog();
+        private volatile boolean dirty;
+
+        private PendingSketch(long urlId, String day, String ownerId) {
+            this.urlId = urlId;
+            this.day = day;
+            this.ownerId = ownerId;
+        }
+
+        private void offer(long hash) {
+            sketch.offerHash(hash);
+            dirty = true;
+        }
+
+        private String id() {
+            return sketchId(urlId, day);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Bounded, in-process read-through cache for short code resolution.
+ * Entries are keyed by the exact code a visitor used (generated or custom) and evicted by
+ * size (W-TinyLFU). An entry is fresh for 'ttl' after it was loaded; after that it is stale
+ * but still served, for up to 'stale-ttl', while a background refresh reloads it. A slow or
+ * unavailable database therefore delays the refresh rather than the redirect.
+ * Concurrent misses for the same code share one lookup (see SingleFlight), so a cold or
+ * freshly evicted viral code costs a single database read rather than one per request.
+ * A load stores its result only if no invalidation of that code happened while it ran, so a
+ * read that started before a write cannot put the old target back afterwards. Stale entries
+ * are served for the full 'stale-ttl' only while the change stream is following other nodes'
+ * writes; otherwise for 'stale-ttl-without-coherence'.
+ * Hit/miss/eviction counts are published as "cache.*" metrics tagged cache=url_mappings.
+ */
+@Component
+public class UrlMappingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UrlMappingCache.class);
+
+    private record Entry(CachedMapping mapping, long loadedAtNanos) {
+    }
+
+    // Invalidation counters, striped by code so memory stays fixed; a collision only skips a store
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final Cache<String, Entry> cache;
+    private final SingleFlight<String, CachedMapping> lookups;
+    private final long freshNanos;
+    private final long incoherentStaleNanos;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong epoch = new AtomicLong();
+    private volatile boolean coherent;
+
+    private final ThreadPoolExecutor refresher;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Counter staleServed;
+    private final Counter refreshFailures;
+
+    public UrlMappingCache(@Value("${app.cache.mappings.max-size:100000}") long maxSize,
+                           @Value("${app.cache.mappings.ttl:10m}") Duration ttl,
+                           @Value("${app.cache.mappings.stale-ttl:24h}") Duration staleTtl,
+                           @Value("${app.cache.mappings.stale-ttl-without-coherence:1m}") Duration incoherentStaleTtl,
+                           @Value("${app.cache.mappings.lookup-wait-timeout:5s}") Duration lookupWaitTimeout,
+                           @Value("${app.cache.mappings.refresh-threads:2}") int refreshThreads,
+                           MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleTtl.compareTo(ttl) > 0 ? staleTtl : ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "url_mappings");
+        this.lookups = new SingleFlight<>("url_mappings", lookupWaitTimeout, meterRegistry);
+        this.freshNanos = ttl.toNanos();
+        this.incoherentStaleNanos = incoherentStaleTtl.toNanos();
+
+        // Refreshes are best effort: when the queue is full the stale entry is simply served longer
+        AtomicInteger threadIds = new AtomicInteger();
+        this.refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1000), runnable -> {
+                    Thread thread = new Thread(runnable, "url-mappings-refresh-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.staleServed = Counter.builder("url_mappings.stale.served")
+                .description("Redirects answered from an entry past its ttl while it was being refreshed")
+                .register(meterRegistry);
+        this.refreshFailures = Counter.builder("url_mappings.refresh.failures")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A resolved mapping (null when the code does not exist) and whether it came from an entry
+     * past its ttl, i.e. a last-known target that may since have changed.
+     */
+    public record Lookup(CachedMapping mapping, boolean stale) {
+    }
+
+    /**
+     * Fresh entries are returned as is; stale ones are returned and refreshed in the background;
+     * misses (and links whose cached expiry has passed) run the loader, once per code however
+     * many requests are waiting. A null from the loader means the code does not exist.
+     */
+    public CachedMapping get(String shortCode, Function<String, CachedMapping> loader) {
+        return lookup(shortCode, loader).mapping();
+    }
+
+    // Same as get, but tells the caller when it is being answered from a stale entry
+    public Lookup lookup(String shortCode, Function<String, CachedMapping> loader) {
+        Entry entry = cache.getIfPresent(shortCode);
+        if (entry != null && !entry.mapping().isExpired(Instant.now())) {
+            long age = System.nanoTime() - entry.loadedAtNanos();
+            if (age < freshNanos) {
+                return new Lookup(entry.mapping(), false);
+            }
+            if (coherent || age - freshNanos < incoherentStaleNanos) {
+                staleServed.increment();
+                refreshInBackground(shortCode, loader);
+                return new Lookup(entry.mapping(), true);
+            }
+            // Other nodes' writes may be missing from this entry; only a fresh read will do
+        }
+        return new Lookup(lookups.load(shortCode, code -> loadAndStore(code, loader)), false);
+    }
+
+    public void put(String shortCode, CachedMapping mapping) {
+        cache.put(shortCode, new Entry(mapping, System.nanoTime()));
+    }
+
+    // Bumped before the entry goes, so a load still in flight sees it when it tries to store
+    public void invalidate(String shortCode) {
+        if (shortCode != null) {
+            generations.incrementAndGet(stripe(shortCode));
+            cache.invalidate(shortCode);
+        }
+    }
+
+    // Used by account deletion, where the codes are not known up front; O(cache size)
+    public void invalidateOwnedBy(String userId) {
+        epoch.incrementAndGet();
+        cache.asMap().values().removeIf(entry -> userId.equals(entry.mapping().userId()));
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    // Set by MappingChangeListener while its change stream is open
+    public void setCoherent(boolean coherent) {
+        this.coherent = coherent;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // Cached before single-flight waiters are released, so requests arriving after this see a hit
+    private CachedMapping loadAndStore(String shortCode, Function<String, CachedMapping> loader) {
+        long generation = generation(shortCode);
+        CachedMapping loaded = loader.apply(shortCode);
+        if (loaded == null) {
+            cache.invalidate(shortCode);
+        } else {
+            // Checked under the entry's lock: an invalidate that bumped first wins, one that bumps later removes this
+            Entry entry = new Entry(loaded, System.nanoTime());
+            cache.asMap().compute(shortCode, (code, current) -> generation(code) == generation ? entry : current);
+        }
+        return loaded;
+    }
+
+    // Both counters only grow, so the sum changes whenever either does
+    private long generation(String shortCode) {
+        return epoch.get() + generations.get(stripe(shortCode));
+    }
+
+    private static int stripe(String shortCode) {
+        int hash = shortCode.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private void refreshInBackground(String shortCode, Function<String, CachedMapping> loader) {
+        if (!refreshing.add(shortCode)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    lookups.load(shortCode, code -> loadAndStore(code, loader));
+                } catch (Exception e) {
+                    // Keep serving the stale entry; the next request past the ttl tries again
+                    refreshFailures.increment();
+                    log.debug("Refresh of {} failed: {}", shortCode, e.getMessage());
+                } finally {
+                    refreshing.remove(shortCode);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(shortCode);
+        }
+    }
+}
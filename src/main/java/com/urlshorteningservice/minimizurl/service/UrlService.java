@@ -1,18 +1,28 @@
 package com.urlshorteningservice.minimizurl.service;
 
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
 import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
 import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenRequest;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenResult;
+import com.urlshorteningservice.minimizurl.dto.LinkPageResponse;
+import com.urlshorteningservice.minimizurl.exception.InvalidRequestException;
 import com.urlshorteningservice.minimizurl.exception.LinkNotFoundException;
 import com.urlshorteningservice.minimizurl.exception.UnauthorizedAccessException;
-import com.urlshorteningservice.minimizurl.repository.ClickEventRepository;
 import com.urlshorteningservice.minimizurl.repository.UrlMappingRepository;
 import com.urlshorteningservice.minimizurl.repository.UserRepository;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.mongodb.core.query.Update;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,18 +30,38 @@ import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 
 @Service
 @RequiredArgsConstructor
 public class UrlService {
 
+    private static final Logger log = LoggerFactory.getLogger(UrlService.class);
+
+    // Mongo duplicate key error, raised here by the unique customCode index
+    private static final int DUPLICATE_KEY = 11000;
+
+    // Ids skipped in a row because their generated code was taken by a custom code
+    private static final int MAX_CODE_ATTEMPTS = 5;
+
     private final UrlMappingRepository urlMappingRepository;
     private final ShorteningService shorteningService;
     private final SequenceGeneratorService sequenceGeneratorService;
     private final MongoTemplate mongoTemplate;
-    private final ClickEventRepository clickEventRepository;
     private final UserRepository userRepository;
+    private final UrlMappingCache urlMappingCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final ClickCounterBuffer clickCounterBuffer;
+    private final ClickEventPipeline clickEventPipeline;
+    private final UniqueVisitorCounter uniqueVisitorCounter;
+    private final ShortCodeIndex shortCodeIndex;
+    private final CircuitBreaker mongoCircuitBreaker;
+    private final RedirectTable redirectTable;
 
     // Default expiration: 30 days
     private static final long DEFAULT_EXPIRY_DAYS = 30;
@@ -41,36 +71,248 @@ public class UrlService {
         // 1. Identity Check
         String userId = getCurrentUserId();
 
-        // 2. Logic as before
-        long id = sequenceGeneratorService.generateSequence("url_sequence");
-        String shortCode = shorteningService.encode(id);
-
-        UrlMapping mapping = new UrlMapping(id, originalUrl, calculateExpiry());
+        // 2. Claim the code first, then persist the mapping that owns it
+        UrlMapping mapping = new UrlMapping(0, originalUrl, calculateExpiry());
         mapping.setUserId(userId); // Persist the identity
-        urlMappingRepository.save(mapping);
+        String shortCode = claimGeneratedCode(mapping);
+        try {
+            urlMappingRepository.save(mapping);
+        } catch (RuntimeException e) {
+            shortCodeIndex.release(List.of(shortCode));
+            throw e;
+        }
+        shortCodeFilter.register(mapping.getId(), null);
+        redirectTable.put(shortCode, CachedMapping.from(mapping));
 
         return shortCode;
     }
 
     // Method B: Custom Shortening (Updated)
     public String shortenUrl(String originalUrl, String customCode) {
-        if (urlMappingRepository.existsByCustomCode(customCode)) {
-            return null;
-        }
-
         // 1. Identity Check
         String userId = getCurrentUserId();
+        if (ShortCodeIndex.isReserved(customCode)) {
+            throw new InvalidRequestException("Custom code is reserved: " + customCode);
+        }
 
         long id = sequenceGeneratorService.generateSequence("url_sequence");
 
         UrlMapping mapping = new UrlMapping(id, originalUrl, calculateExpiry());
         mapping.setCustomCode(customCode);
         mapping.setUserId(userId); // Persist the identity 🔗
-        urlMappingRepository.save(mapping);
+
+        // 2. The custom code decides the outcome; the generated alias is kept only if still free
+        if (!shortCodeIndex.claim(customCode, mapping)) {
+            return null;
+        }
+        List<String> claimed = new ArrayList<>(List.of(customCode));
+        String alias = shorteningService.encode(id);
+        if (shortCodeIndex.claim(alias, mapping)) {
+            claimed.add(alias);
+        }
+
+        try {
+            urlMappingRepository.save(mapping);
+        } catch (DuplicateKeyException e) {
+            // A link not yet backfilled into short_codes already uses this custom code
+            shortCodeIndex.release(claimed);
+            return null;
+        } catch (RuntimeException e) {
+            shortCodeIndex.release(claimed);
+            throw e;
+        }
+        shortCodeFilter.register(id, customCode);
+        CachedMapping cached = CachedMapping.from(mapping);
+        claimed.forEach(code -> redirectTable.put(code, cached));
 
         return customCode;
     }
 
+    // A custom or reserved code may equal the base62 form of a later id; such ids are skipped
+    private String claimGeneratedCode(UrlMapping mapping) {
+        for (int attempt = 0; attempt < MAX_CODE_ATTEMPTS; attempt++) {
+            long id = sequenceGeneratorService.generateSequence("url_sequence");
+            mapping.setId(id);
+            String shortCode = shorteningService.encode(id);
+            if (shortCodeIndex.claim(shortCode, mapping)) {
+                return shortCode;
+            }
+        }
+        throw new IllegalStateException("No free short code after " + MAX_CODE_ATTEMPTS + " ids");
+    }
+
+    /**
+     * Shortens one chunk of a bulk request with a fixed number of round trips: one $in query
+     * for custom-code collisions, one sequence call for the id range, one unordered insert of
+     * the code claims and one of the mappings.
+     * Returns one result per item, in input order; 'firstIndex' is the chunk's offset in the request.
+     */
+    public List<BulkShortenResult> shortenBatch(List<BulkShortenRequest> items, long firstIndex, String userId) {
+        BulkShortenResult[] results = new BulkShortenResult[items.size()];
+        String[] codes = new String[items.size()];
+
+        // 1. Local validation, including codes repeated within the chunk
+        Set<String> requestedCodes = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            BulkShortenRequest item = items.get(i);
+            String url = item.getUrl();
+            if (url == null || url.isBlank()) {
+                results[i] = result(firstIndex + i, url, null, BulkShortenResult.INVALID, "url is required");
+                continue;
+            }
+            String code = item.getCustomCode() == null || item.getCustomCode().isBlank()
+                    ? null : item.getCustomCode().trim();
+            if (code != null && ShortCodeIndex.isReserved(code)) {
+                results[i] = result(firstIndex + i, url, code, BulkShortenResult.INVALID, "custom code is reserved");
+                continue;
+            }
+            if (code != null && !requestedCodes.add(code)) {
+                results[i] = result(firstIndex + i, url, code, BulkShortenResult.CONFLICT,
+                        "custom code repeated in request");
+                continue;
+            }
+            codes[i] = code;
+        }
+
+        // 2. Collisions with existing codes in a single query
+        Set<String> existing = shortCodeIndex.taken(requestedCodes);
+        for (int i = 0; i < items.size(); i++) {
+            if (results[i] == null && codes[i] != null && existing.contains(codes[i])) {
+                results[i] = result(firstIndex + i, items.get(i).getUrl(), codes[i],
+                        BulkShortenResult.CONFLICT, "custom code is already in use");
+            }
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (results[i] == null) {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        // 3. One id range for the whole chunk
+        long[] ids = sequenceGeneratorService.generateSequences("url_sequence", pending.size());
+        Instant expiry = calculateExpiry();
+        List<UrlMapping> mappings = new ArrayList<>(pending.size());
+        for (int j = 0; j < pending.size(); j++) {
+            int i = pending.get(j);
+            UrlMapping mapping = new UrlMapping(ids[j], items.get(i).getUrl(), expiry);
+            mapping.setCustomCode(codes[i]);
+            mapping.setUserId(userId);
+            mappings.add(mapping);
+        }
+
+        // 4. Claim every code in one unordered insert; claimOwner maps a claim back to its mapping
+        List<ShortCode> claims = new ArrayList<>();
+        List<Integer> claimOwner = new ArrayList<>();
+        for (int j = 0; j < mappings.size(); j++) {
+            UrlMapping mapping = mappings.get(j);
+            if (mapping.getCustomCode() != null) {
+                claims.add(ShortCode.of(mapping.getCustomCode(), mapping));
+                claimOwner.add(j);
+            }
+            claims.add(ShortCode.of(shorteningService.encode(mapping.getId()), mapping));
+            claimOwner.add(j);
+        }
+        Set<Integer> rejected = shortCodeIndex.claimAll(claims);
+
+        boolean[] failed = new boolean[mappings.size()];
+        List<List<String>> claimedBy = new ArrayList<>();
+        for (int j = 0; j < mappings.size(); j++) {
+            claimedBy.add(new ArrayList<>());
+        }
+        for (int c = 0; c < claims.size(); c++) {
+            int j = claimOwner.get(c);
+            String code = claims.get(c).getCode();
+            if (!rejected.contains(c)) {
+                claimedBy.get(j).add(code);
+                continue;
+            }
+            int i = pending.get(j);
+            if (codes[i] != null && codes[i].equals(code)) {
+                failed[j] = true;
+                results[i] = result(firstIndex + i, items.get(i).getUrl(), code,
+                        BulkShortenResult.CONFLICT, "custom code is already in use");
+            } else if (codes[i] == null) {
+                // Generated code already taken by a custom code; the item can simply be retried
+                failed[j] = true;
+                results[i] = result(firstIndex + i, items.get(i).getUrl(), null,
+                        BulkShortenResult.FAILED, "generated code unavailable");
+            }
+            // A custom link whose generated alias is taken is still created
+        }
+
+        List<Integer> toInsert = new ArrayList<>();
+        for (int j = 0; j < mappings.size(); j++) {
+            if (!failed[j]) {
+                toInsert.add(j);
+            }
+        }
+
+        // 5. Unordered insert: a failed document doesn't stop the rest
+        List<String> orphanedClaims = new ArrayList<>();
+        for (int j = 0; j < mappings.size(); j++) {
+            if (failed[j]) {
+                orphanedClaims.addAll(claimedBy.get(j));
+            }
+        }
+        if (!toInsert.isEmpty()) {
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UrlMapping.class)
+                        .insert(toInsert.stream().map(mappings::get).toList())
+                        .execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    int j = toInsert.get(error.getIndex());
+                    int i = pending.get(j);
+                    failed[j] = true;
+                    orphanedClaims.addAll(claimedBy.get(j));
+                    boolean conflict = error.getCode() == DUPLICATE_KEY && codes[i] != null;
+                    results[i] = result(firstIndex + i, items.get(i).getUrl(), codes[i],
+                            conflict ? BulkShortenResult.CONFLICT : BulkShortenResult.FAILED,
+                            conflict ? "custom code is already in use" : error.getMessage());
+                }
+            } catch (Exception e) {
+                log.warn("Bulk insert of {} links failed: {}", toInsert.size(), e.getMessage());
+                for (int j : toInsert) {
+                    int i = pending.get(j);
+                    failed[j] = true;
+                    orphanedClaims.addAll(claimedBy.get(j));
+                    results[i] = result(firstIndex + i, items.get(i).getUrl(), codes[i],
+                            BulkShortenResult.FAILED, "write failed");
+                }
+            }
+        }
+        shortCodeIndex.release(orphanedClaims);
+
+        for (int j : toInsert) {
+            if (failed[j]) {
+                continue;
+            }
+            int i = pending.get(j);
+            UrlMapping mapping = mappings.get(j);
+            shortCodeFilter.register(mapping.getId(), codes[i]);
+            CachedMapping cached = CachedMapping.from(mapping);
+            claimedBy.get(j).forEach(code -> redirectTable.put(code, cached));
+            String shortCode = codes[i] != null ? codes[i] : shorteningService.encode(mapping.getId());
+            results[i] = result(firstIndex + i, mapping.getOriginalUrl(), shortCode, BulkShortenResult.CREATED, null);
+        }
+        return Arrays.asList(results);
+    }
+
+    private static BulkShortenResult result(long index, String url, String shortCode, String status, String error) {
+        return BulkShortenResult.builder()
+                .index(index)
+                .url(url)
+                .shortCode(shortCode)
+                .status(status)
+                .error(error)
+                .build();
+    }
+
     private String getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
@@ -80,25 +322,75 @@ public class UrlService {
         return "GUEST";
     }
 
-    public String getOriginalUrl(String shortCode, String referer, String userAgent, String visitorId) {
-        UrlMapping mapping = findMappingByShortCode(shortCode);
+    /**
+     * Where a short code redirects to. 'stale' is set when the target is a last-known one served
+     * past the cache ttl while it is being refreshed (see UrlMappingCache).
+     */
+    public record Redirect(String originalUrl, boolean stale) {
+    }
+
+    public String getOriginalUrl(String shortCode, String referer, String userAgent, String visitorId,
+                                 String clientAddress) {
+        return redirect(shortCode, referer, userAgent, visitorId, clientAddress).originalUrl();
+    }
+
+    public Redirect redirect(String shortCode, String referer, String userAgent, String visitorId,
+                             String clientAddress) {
+        UrlMappingCache.Lookup lookup = resolveForRedirect(shortCode);
+        CachedMapping mapping = lookup.mapping();
 
         // Use custom exception instead of returning null
         if (mapping == null) {
             throw new LinkNotFoundException(shortCode);
         }
 
-        // Atomically update click count and expiry
-        Query query = new Query(Criteria.where("_id").is(mapping.getId()));
-        Update update = new Update()
-                .inc("clicks", 1)
-                .set("expirationDate", calculateExpiry());
+        // Click count and sliding expiry are buffered and written in batches
+        clickCounterBuffer.recordClick(mapping.id(), calculateExpiry());
 
-        mongoTemplate.updateFirst(query, update, UrlMapping.class);
+        recordClick(mapping.id(), mapping.userId(), visitorId, referer, userAgent);
+        uniqueVisitorCounter.record(mapping.id(), mapping.userId(),
+                UniqueVisitorCounter.visitorKey(visitorId, clientAddress, userAgent));
 
-        recordClick(mapping.getId(), mapping.getUserId(), visitorId, referer, userAgent);
+        return new Redirect(mapping.originalUrl(), lookup.stale());
+    }
 
-        return mapping.getOriginalUrl();
+    // Off-heap table first, then the read-through cache (stale entries while they refresh), then Mongo
+    private UrlMappingCache.Lookup resolveForRedirect(String shortCode) {
+        CachedMapping mapped = redirectTable.get(shortCode);
+        if (mapped != null && !mapped.isExpired(Instant.now())) {
+            // Only served while the change stream keeps it current
+            return new UrlMappingCache.Lookup(mapped, false);
+        }
+        return urlMappingCache.lookup(shortCode, this::lookupForRedirect);
+    }
+
+    // One point read on short_codes, which carries everything a redirect needs
+    private CachedMapping lookupForRedirect(String shortCode) {
+        long missStamp = shortCodeFilter.missStamp(shortCode);
+        // Codes the filter has never seen are answered without a round trip
+        if (shortCodeFilter.isDefinitelyAbsent(shortCode)) {
+            return null;
+        }
+
+        // Breaker-guarded: under database distress this fails fast (503) instead of queueing on Mongo
+        ShortCode entry = mongoCircuitBreaker.call(() -> shortCodeIndex.resolve(shortCode));
+        CachedMapping found = entry != null ? entry.toCachedMapping() : null;
+        if (found == null && shortCodeIndex.isLegacyLookup()) {
+            UrlMapping legacy = mongoCircuitBreaker.call(() -> findLegacyMapping(shortCode));
+            found = legacy != null ? CachedMapping.from(legacy) : null;
+        }
+
+        // Not written to the redirect table: this read may already be older than a concurrent update or delete
+        if (found == null) {
+            shortCodeFilter.recordMiss(shortCode, missStamp);
+        }
+        return found;
+    }
+
+    // Drop every code that can resolve to this mapping so no node-local entry outlives a write
+    private void evictFromCache(UrlMapping mapping) {
+        urlMappingCache.invalidate(shorteningService.encode(mapping.getId()));
+        urlMappingCache.invalidate(mapping.getCustomCode());
     }
 
     private Instant calculateExpiry() {
@@ -118,6 +410,10 @@ public class UrlService {
         // Validation and ownership are now handled by our helper
         UrlMapping mapping = getMappingForUser(shortCode, userId);
         urlMappingRepository.deleteById(mapping.getId());
+        shortCodeIndex.remove(mapping.getId());
+        evictFromCache(mapping);
+        redirectTable.remove(shorteningService.encode(mapping.getId()), mapping.getId());
+        redirectTable.remove(mapping.getCustomCode(), mapping.getId());
     }
 
     // Method B: Secure Update
@@ -127,29 +423,84 @@ public class UrlService {
 
         mapping.setOriginalUrl(newUrl);
         mapping.setExpirationDate(calculateExpiry());
-        return urlMappingRepository.save(mapping);
+        UrlMapping saved = urlMappingRepository.save(mapping);
+        shortCodeIndex.update(saved);
+        evictFromCache(saved);
+        CachedMapping cached = CachedMapping.from(saved);
+        redirectTable.replace(shorteningService.encode(saved.getId()), cached);
+        redirectTable.replace(saved.getCustomCode(), cached);
+        return saved;
     }
 
-    @Async
+    // Hands the event to the ingestion pipeline; persistence happens off the request thread
     public void recordClick(Long urlId, String ownerId, String visitorId, String referer, String userAgent) {
-        ClickEvent event = new ClickEvent(urlId, ownerId, visitorId, referer, userAgent);
-        clickEventRepository.save(event);
+        ClickEvent event = new ClickEvent(urlId, referer, userAgent, ownerId, visitorId);
+        clickEventPipeline.submit(event);
     }
 
     public UrlMapping findMappingByShortCode(String shortCode) {
-        long id = -1;
-        try {
-            id = shorteningService.decode(shortCode);
-        } catch (Exception e) {
-            // Likely a custom code
+        long missStamp = shortCodeFilter.missStamp(shortCode);
+        // Codes the filter has never seen are answered without a round trip
+        if (shortCodeFilter.isDefinitelyAbsent(shortCode)) {
+            return null;
+        }
+
+        // Code -> id from short_codes, then the full document by _id
+        ShortCode entry = mongoCircuitBreaker.call(() -> shortCodeIndex.resolve(shortCode));
+        UrlMapping mapping;
+        if (entry != null) {
+            mapping = mongoCircuitBreaker.call(() -> mongoTemplate.findById(entry.getUrlId(), UrlMapping.class));
+        } else {
+            mapping = shortCodeIndex.isLegacyLookup()
+                    ? mongoCircuitBreaker.call(() -> findLegacyMapping(shortCode)) : null;
+        }
+        if (mapping == null) {
+            shortCodeFilter.recordMiss(shortCode, missStamp);
         }
+        return mapping;
+    }
 
-        Query query = new Query(new Criteria().orOperator(
-                Criteria.where("_id").is(id),
-                Criteria.where("customCode").is(shortCode)
-        ));
+    // Pre-index resolution, for mappings not yet backfilled into short_codes (app.short-codes.legacy-lookup)
+    private UrlMapping findLegacyMapping(String shortCode) {
+        // Only canonical base62 codes can be ids; everything else skips the _id branch
+        Criteria criteria = Criteria.where("customCode").is(shortCode);
+        if (shorteningService.isValidGeneratedCode(shortCode)) {
+            criteria = new Criteria().orOperator(
+                    Criteria.where("_id").is(shorteningService.decode(shortCode)),
+                    criteria
+            );
+        }
+        return mongoTemplate.findOne(new Query(criteria), UrlMapping.class);
+    }
 
-        return mongoTemplate.findOne(query, UrlMapping.class);
+    /**
+     * One page of the user's links, newest first. Pages are keyset-based: the cursor carries the
+     * createdDate and id of the last link served and the next page starts strictly after it on the
+     * {userId, createdDate, _id} index, so every page costs the same however deep the caller
+     * scrolls, and concurrent inserts or deletes never shift or repeat entries. Ids alone are not
+     * creation order once they are leased in blocks or generated per node.
+     */
+    public LinkPageResponse getLinksPage(String userId, String cursor, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (cursor != null && !cursor.isBlank()) {
+            criteria = criteria.andOperator(LinkPageCursor.decode(cursor).after());
+        }
+        // One extra document tells us whether another page exists
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdDate", "_id"))
+                .limit(limit + 1);
+        List<UrlMapping> links = mongoTemplate.find(query, UrlMapping.class);
+
+        String nextCursor = null;
+        if (links.size() > limit) {
+            links = links.subList(0, limit);
+            UrlMapping last = links.get(limit - 1);
+            nextCursor = new LinkPageCursor(last.getCreatedDate(), last.getId()).encode();
+        }
+        return LinkPageResponse.builder()
+                .links(links)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     public UrlMapping getMappingForUser(String shortCode, String userId) {
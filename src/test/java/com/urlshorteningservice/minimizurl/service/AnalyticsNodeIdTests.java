@@ -0,0 +1,35 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalyticsNodeIdTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void generatedIdIsReusedAfterARestart() {
+        Path file = dir.resolve("data").resolve("analytics-node-id");
+
+        String first = new AnalyticsNodeId("", file).value();
+        String second = new AnalyticsNodeId("", file).value();
+
+        assertFalse(first.isBlank());
+        assertEquals(first, second);
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void configuredIdWinsAndIsNotPersisted() {
+        Path file = dir.resolve("analytics-node-id");
+
+        assertEquals("node-a", new AnalyticsNodeId("node-a", file).value());
+        assertFalse(Files.exists(file));
+    }
+}
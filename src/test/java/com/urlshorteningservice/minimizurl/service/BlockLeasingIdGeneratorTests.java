@@ -0,0 +1,119 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongBiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockLeasingIdGeneratorTests {
+
+    private static final String SEQUENCE = "url_sequence";
+    private static final String PREFETCH_THREAD = "id-block-prefetch";
+
+    private final AtomicLong counter = new AtomicLong();
+    // Thread that leased each range, in lease order
+    private final List<String> leasedBy = new CopyOnWriteArrayList<>();
+
+    @Test
+    void thresholdOutsideZeroToOneIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BlockLeasingIdGenerator(this::increment, 100, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> new BlockLeasingIdGenerator(this::increment, 100, -0.1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BlockLeasingIdGenerator(this::increment, 100, Double.NaN));
+        new BlockLeasingIdGenerator(this::increment, 100, 0);
+    }
+
+    @Test
+    void concurrentIdsAreUniqueAcrossBlockBoundaries() throws Exception {
+        int blockSize = 50;
+        BlockLeasingIdGenerator generator = new BlockLeasingIdGenerator(this::increment, blockSize, 0.2);
+        int threads = 8;
+        int perThread = 5_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        AtomicBoolean duplicate = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < perThread; i++) {
+                    if (!ids.add(generator.nextId(SEQUENCE))) {
+                        duplicate.set(true);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertFalse(duplicate.get());
+        assertEquals(threads * perThread, ids.size());
+        // Every id comes from a leased range; at most the current and the prefetched range are unused
+        assertTrue(ids.stream().allMatch(id -> id >= 1 && id <= counter.get()));
+        assertTrue(counter.get() - ids.size() <= 2L * blockSize, "gap " + (counter.get() - ids.size()));
+    }
+
+    @Test
+    void laterBlocksAreLeasedByThePrefetcher() {
+        int blockSize = 10;
+        BlockLeasingIdGenerator generator = new BlockLeasingIdGenerator(this::increment, blockSize, 0.5);
+
+        for (long expected = 1; expected <= 3L * blockSize; expected++) {
+            assertEquals(expected, generator.nextId(SEQUENCE));
+        }
+
+        // Only the very first range is leased on the caller's thread
+        assertNotEquals(PREFETCH_THREAD, leasedBy.get(0));
+        assertTrue(leasedBy.subList(1, leasedBy.size()).stream().allMatch(PREFETCH_THREAD::equals), leasedBy.toString());
+        // Ranges two and three were joined; the prefetch of range four may still be running
+        assertTrue(leasedBy.size() >= 3);
+    }
+
+    @Test
+    void failedPrefetchFallsBackToASynchronousLease() {
+        int blockSize = 10;
+        AtomicBoolean failPrefetch = new AtomicBoolean(true);
+        ToLongBiFunction<String, Integer> failingOnce = (name, count) -> {
+            if (Thread.currentThread().getName().equals(PREFETCH_THREAD) && failPrefetch.getAndSet(false)) {
+                throw new IllegalStateException("database unavailable");
+            }
+            return increment(name, count);
+        };
+        BlockLeasingIdGenerator generator = new BlockLeasingIdGenerator(failingOnce, blockSize, 0.5);
+
+        for (long expected = 1; expected <= 2L * blockSize; expected++) {
+            assertEquals(expected, generator.nextId(SEQUENCE));
+        }
+
+        assertFalse(failPrefetch.get());
+        // Both ranges came from the caller: the first on demand, the second after the prefetch failed
+        assertEquals(2, leasedBy.stream().filter(name -> !name.equals(PREFETCH_THREAD)).count(), leasedBy.toString());
+    }
+
+    private long increment(String sequenceName, int count) {
+        assertEquals(SEQUENCE, sequenceName);
+        leasedBy.add(Thread.currentThread().getName());
+        return counter.addAndGet(count);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenRequest;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BulkShortenServiceTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UrlService urlService = mock(UrlService.class);
+
+    BulkShortenServiceTests() {
+        when(urlService.shortenBatch(anyList(), anyLong(), anyString())).thenAnswer(invocation -> {
+            List<BulkShortenRequest> chunk = invocation.getArgument(0);
+            long firstIndex = invocation.getArgument(1);
+            List<BulkShortenResult> results = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(BulkShortenResult.builder().index(firstIndex + i).url(chunk.get(i).getUrl())
+                        .status(BulkShortenResult.CREATED).build());
+            }
+            return results;
+        });
+    }
+
+    @Test
+    void partialChunkIsReportedBeforeTheMalformedItem() throws Exception {
+        List<JsonNode> lines = shorten(10, 100, """
+                {"url":"https://example.com/0"}
+                {"url":"https://example.com/1"}
+                {"url":
+                """);
+
+        assertIndexes(lines, 0, 1, 2);
+        assertEquals(BulkShortenResult.CREATED, lines.get(1).get("status").asText());
+        assertEquals(BulkShortenResult.INVALID, lines.get(2).get("status").asText());
+    }
+
+    @Test
+    void partialChunkIsReportedBeforeTheItemLimit() throws Exception {
+        List<JsonNode> lines = shorten(2, 3, """
+                [{"url":"https://example.com/0"},{"url":"https://example.com/1"},
+                 {"url":"https://example.com/2"},{"url":"https://example.com/3"}]
+                """);
+
+        assertIndexes(lines, 0, 1, 2, 3);
+        assertEquals(BulkShortenResult.CREATED, lines.get(2).get("status").asText());
+        assertEquals(BulkShortenResult.INVALID, lines.get(3).get("status").asText());
+        assertEquals("request exceeds 3 items", lines.get(3).get("error").asText());
+    }
+
+    private List<JsonNode> shorten(int chunkSize, long maxItems, String body) throws Exception {
+        BulkShortenService service = new BulkShortenService(urlService, objectMapper, new SimpleMeterRegistry(),
+                chunkSize, maxItems);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.shorten(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out, "user-1");
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private static void assertIndexes(List<JsonNode> lines, long... expected) {
+        assertArrayEquals(expected, lines.stream().mapToLong(line -> line.get("index").asLong()).toArray());
+    }
+}
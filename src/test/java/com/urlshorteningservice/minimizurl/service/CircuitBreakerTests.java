@@ -0,0 +1,82 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    // window 10, at least 5 calls, opens at 50% bad, slow above 100ms, open for 1s, 2 probes
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 10, 5, 0.5,
+            Duration.ofMillis(100), Duration.ofSeconds(1), 2, new SimpleMeterRegistry(), clock::get);
+
+    @Test
+    void slowCallsTripTheBreakerWithoutAnyError() {
+        for (int i = 0; i < 5; i++) {
+            call(Duration.ofMillis(10));
+        }
+        for (int i = 0; i < 4; i++) {
+            call(Duration.ofMillis(300));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        call(Duration.ofMillis(300)); // 5 of 10 slow
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertTrue(breaker.isOpen());
+        assertThrows(ServiceUnavailableException.class, () -> call(Duration.ZERO));
+    }
+
+    @Test
+    void failuresCountAsBadCalls() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, () -> breaker.call(() -> {
+                throw new IllegalStateException("down");
+            }));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void fewerThanMinCallsNeverTrip() {
+        for (int i = 0; i < 4; i++) {
+            call(Duration.ofSeconds(1));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void goodProbesCloseAndABadProbeReopens() {
+        trip();
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertFalse(breaker.isOpen());
+
+        call(Duration.ofMillis(10));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        call(Duration.ofMillis(10));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        trip();
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        call(Duration.ofMillis(500));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertThrows(ServiceUnavailableException.class, () -> call(Duration.ZERO));
+    }
+
+    private void trip() {
+        for (int i = 0; i < 5; i++) {
+            call(Duration.ofSeconds(1));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private void call(Duration latency) {
+        breaker.call(() -> clock.addAndGet(latency.toNanos()));
+    }
+}
@@ -0,0 +1,210 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Counters are swapped out while redirect threads keep incrementing them; every click must reach
+ * exactly one successful bulk write, whatever the interleaving or the outcome of earlier writes.
+ */
+class ClickCounterBufferTests {
+
+    private static final Instant EXPIRY = Instant.parse("2030-01-01T00:00:00Z");
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final CircuitBreaker breaker = mock(CircuitBreaker.class);
+    // Clicks per link in bulk writes that succeeded
+    private final Map<Long, Long> written = new ConcurrentHashMap<>();
+    // Outcome of the next bulk writes: given the link ids in write order, what execute() throws (null: success)
+    private final Deque<Function<List<Long>, RuntimeException>> outcomes = new ArrayDeque<>();
+    private int bulkWrites;
+
+    ClickCounterBufferTests() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UrlMapping.class))
+                .thenAnswer(invocation -> recordingBulk());
+    }
+
+    @Test
+    void concurrentClicksDuringFlushesAreWrittenExactlyOnce() throws Exception {
+        ClickCounterBuffer buffer = buffer(Duration.ofSeconds(5));
+        int threads = 8;
+        int clicksPerThread = 20_000;
+        int links = 10;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean clicking = new AtomicBoolean(true);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < clicksPerThread; i++) {
+                    buffer.recordClick(i % links, EXPIRY);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        Thread flusher = new Thread(() -> {
+            while (clicking.get()) {
+                buffer.flush();
+            }
+        });
+        flusher.start();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        clicking.set(false);
+        flusher.join();
+        buffer.drainOnShutdown();
+
+        for (long link = 0; link < links; link++) {
+            assertEquals((long) threads * clicksPerThread / links, written.getOrDefault(link, 0L), "link " + link);
+        }
+    }
+
+    @Test
+    void failedBulkWriteIsRequeued() {
+        ClickCounterBuffer buffer = buffer(Duration.ofSeconds(5));
+        click(buffer, 1, 3);
+        click(buffer, 2, 2);
+        outcomes.add(ids -> new IllegalStateException("connection reset"));
+
+        buffer.flush();
+        assertTrue(written.isEmpty());
+        click(buffer, 1, 1);
+        buffer.flush();
+
+        assertEquals(Map.of(1L, 4L, 2L, 2L), written);
+    }
+
+    @Test
+    void partiallyFailedBulkWriteRequeuesOnlyTheFailedUpdates() {
+        ClickCounterBuffer buffer = buffer(Duration.ofSeconds(5));
+        click(buffer, 1, 3);
+        click(buffer, 2, 2);
+        click(buffer, 3, 1);
+        List<Long> failedIds = new ArrayList<>();
+        outcomes.add(ids -> {
+            failedIds.add(ids.get(1));
+            return bulkFailure(1);
+        });
+
+        buffer.flush();
+        assertEquals(2, written.size());
+        assertFalse(written.containsKey(failedIds.get(0)));
+        buffer.flush();
+
+        assertEquals(Map.of(1L, 3L, 2L, 2L, 3L, 1L), written);
+        assertEquals(2, bulkWrites);
+    }
+
+    @Test
+    void nothingIsWrittenWhileTheBreakerIsOpen() {
+        ClickCounterBuffer buffer = buffer(Duration.ZERO);
+        click(buffer, 1, 5);
+        when(breaker.isOpen()).thenReturn(true);
+
+        buffer.flushIfDue();
+        verifyNoInteractions(mongoTemplate);
+
+        when(breaker.isOpen()).thenReturn(false);
+        buffer.flushIfDue();
+        assertEquals(Map.of(1L, 5L), written);
+    }
+
+    private ClickCounterBuffer buffer(Duration maxStaleness) {
+        return new ClickCounterBuffer(mongoTemplate, mock(ShortCodeIndex.class), breaker, new SimpleMeterRegistry(),
+                maxStaleness, 10_000);
+    }
+
+    private static void click(ClickCounterBuffer buffer, long urlId, int times) {
+        for (int i = 0; i < times; i++) {
+            buffer.recordClick(urlId, EXPIRY);
+        }
+    }
+
+    // Collects updateOne calls; execute() applies them to 'written' unless the next outcome fails them
+    private BulkOperations recordingBulk() {
+        List<Long> ids = new ArrayList<>();
+        List<Long> clicks = new ArrayList<>();
+        return mock(BulkOperations.class, invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "updateOne" -> {
+                    Query query = invocation.getArgument(0);
+                    UpdateDefinition update = invocation.getArgument(1);
+                    ids.add(((Number) query.getQueryObject().get("_id")).longValue());
+                    clicks.add(update.getUpdateObject().get("$inc", Document.class).get("clicks", Number.class)
+                            .longValue());
+                    return invocation.getMock();
+                }
+                case "execute" -> {
+                    bulkWrites++;
+                    Function<List<Long>, RuntimeException> outcome = outcomes.poll();
+                    RuntimeException failure = outcome != null ? outcome.apply(ids) : null;
+                    Set<Integer> failed = failure instanceof BulkOperationException partial
+                            ? partial.getErrors().stream().map(BulkWriteError::getIndex)
+                                    .collect(Collectors.toSet())
+                            : failure != null ? null : Set.of();
+                    if (failed != null) {
+                        for (int i = 0; i < ids.size(); i++) {
+                            if (!failed.contains(i)) {
+                                written.merge(ids.get(i), clicks.get(i), Long::sum);
+                            }
+                        }
+                    }
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return null;
+                }
+                default -> {
+                    return invocation.getMock();
+                }
+            }
+        });
+    }
+
+    private static BulkOperationException bulkFailure(int index) {
+        List<BulkWriteError> errors = List.of(new BulkWriteError(121, "document failed validation",
+                new BsonDocument(), index));
+        return new BulkOperationException("bulk write failed", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), errors, null, new ServerAddress(), Set.of()));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ClickEventPipelineTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ClickEventStore store = mock(ClickEventStore.class);
+    private final CircuitBreaker breaker = mock(CircuitBreaker.class);
+    // Stubbed once, so the consumer thread never races a re-stub
+    private final AtomicBoolean breakerOpen = new AtomicBoolean();
+    // Persisted batches as the listener saw them (copied: the pipeline reuses the list)
+    private final List<List<ClickEvent>> delivered = new CopyOnWriteArrayList<>();
+    private final ClickBatchListener listener = batch -> delivered.add(List.copyOf(batch));
+    private ClickEventPipeline pipeline;
+
+    ClickEventPipelineTests() {
+        when(breaker.isOpen()).thenAnswer(invocation -> breakerOpen.get());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void fullQueueDropsAndCountsUnderDrop() {
+        pipeline = pipeline(3, 10, Duration.ofMillis(50), ClickEventPipeline.OverflowPolicy.DROP, Duration.ZERO);
+
+        int accepted = 0;
+        for (int i = 0; i < 5; i++) {
+            accepted += pipeline.submit(event(i)) ? 1 : 0;
+        }
+
+        assertEquals(3, accepted);
+        assertEquals(2.0, registry.counter("clicks.events.dropped").count());
+        pipeline.start();
+        pipeline.stop();
+        assertEquals(List.of(0L, 1L, 2L), deliveredUrlIds());
+    }
+
+    @Test
+    void producersBlockUntilTheConsumerMakesRoomUnderBlock() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            assertTrue(release.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+            return null;
+        }).when(store).insert(anyList());
+        pipeline = pipeline(2, 1, Duration.ofMillis(10), ClickEventPipeline.OverflowPolicy.BLOCK, TIMEOUT);
+        pipeline.start();
+
+        // The consumer takes the first event and is held in its write; the next two fill the queue
+        assertTrue(pipeline.submit(event(0)));
+        assertTrue(writing.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        assertTrue(pipeline.submit(event(1)));
+        assertTrue(pipeline.submit(event(2)));
+
+        AtomicBoolean accepted = new AtomicBoolean();
+        Thread producer = new Thread(() -> accepted.set(pipeline.submit(event(3))));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "producer should wait for space");
+
+        release.countDown();
+        producer.join(TIMEOUT.toMillis());
+        assertTrue(accepted.get());
+        assertEquals(0.0, registry.counter("clicks.events.dropped").count());
+
+        pipeline.stop();
+        assertEquals(List.of(0L, 1L, 2L, 3L), deliveredUrlIds());
+    }
+
+    @Test
+    void blockedProducerGivesUpAfterTheTimeout() {
+        pipeline = pipeline(1, 10, Duration.ofMillis(10), ClickEventPipeline.OverflowPolicy.BLOCK,
+                Duration.ofMillis(50));
+        // Nothing is drained, so the single slot stays taken
+        breakerOpen.set(true);
+        pipeline.start();
+
+        assertTrue(pipeline.submit(event(0)));
+        long started = System.nanoTime();
+        assertFalse(pipeline.submit(event(1)));
+
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1.0, registry.counter("clicks.events.dropped").count());
+    }
+
+    @Test
+    void partialBatchIsWrittenAfterTheLinger() {
+        pipeline = pipeline(100, 100, Duration.ofMillis(50), ClickEventPipeline.OverflowPolicy.DROP, Duration.ZERO);
+        pipeline.start();
+
+        for (int i = 0; i < 3; i++) {
+            pipeline.submit(event(i));
+        }
+
+        awaitTrue(() -> !delivered.isEmpty());
+        assertEquals(List.of(List.of(0L, 1L, 2L)), delivered.stream()
+                .map(batch -> batch.stream().map(ClickEvent::getUrlId).toList()).toList());
+    }
+
+    @Test
+    void eventsWaitWhileTheBreakerIsOpen() throws Exception {
+        breakerOpen.set(true);
+        pipeline = pipeline(100, 1, Duration.ofMillis(5), ClickEventPipeline.OverflowPolicy.DROP, Duration.ZERO);
+        pipeline.start();
+
+        pipeline.submit(event(0));
+        Thread.sleep(100);
+        verify(store, never()).insert(anyList());
+
+        breakerOpen.set(false);
+        awaitTrue(() -> !delivered.isEmpty());
+        assertEquals(List.of(0L), deliveredUrlIds());
+    }
+
+    @Test
+    void stopDeliversEveryAcceptedEvent() throws Exception {
+        // A long linger: only the drain on stop can flush the last partial batch
+        pipeline = pipeline(100_000, 64, Duration.ofSeconds(30), ClickEventPipeline.OverflowPolicy.DROP,
+                Duration.ZERO);
+        pipeline.start();
+
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 10_000;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 2_501; i++) {
+                    if (pipeline.submit(event(offset + i))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        pipeline.stop();
+
+        List<Long> ids = deliveredUrlIds();
+        assertEquals(accepted.get(), ids.size());
+        assertEquals(ids.size(), ids.stream().distinct().count());
+        assertEquals(4 * 2_501, accepted.get());
+        assertEquals(ids.size(), registry.counter("clicks.events.written").count());
+    }
+
+    private ClickEventPipeline pipeline(int capacity, int batchSize, Duration linger,
+                                        ClickEventPipeline.OverflowPolicy policy, Duration blockTimeout) {
+        return new ClickEventPipeline(store, breaker, registry, List.of(listener), capacity, batchSize, linger,
+                policy, blockTimeout, TIMEOUT);
+    }
+
+    private List<Long> deliveredUrlIds() {
+        return delivered.stream().flatMap(List::stream).map(ClickEvent::getUrlId).toList();
+    }
+
+    private static ClickEvent event(long urlId) {
+        return new ClickEvent(urlId, null, "test", "owner-1", "visitor-" + urlId);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within " + TIMEOUT);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
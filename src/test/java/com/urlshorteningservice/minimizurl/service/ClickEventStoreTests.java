@@ -0,0 +1,44 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ClickEventStoreTests {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ClickEventStore store = new ClickEventStore(mongoTemplate, Duration.ofDays(400));
+
+    @Test
+    void legacyCollectionIsDroppedOnceNothingInItIsRetained() {
+        when(mongoTemplate.getCollectionNames()).thenReturn(Set.of("click_events", "click_events_2020_01"));
+        when(mongoTemplate.exists(any(Query.class), eq("click_events"))).thenReturn(false);
+
+        store.dropExpiredBuckets();
+
+        verify(mongoTemplate).dropCollection("click_events_2020_01");
+        verify(mongoTemplate).dropCollection("click_events");
+        when(mongoTemplate.getCollectionNames()).thenReturn(Set.of());
+        assertFalse(store.allBuckets().contains("click_events"));
+    }
+
+    @Test
+    void legacyCollectionWithRetainedEventsIsKept() {
+        when(mongoTemplate.getCollectionNames()).thenReturn(Set.of("click_events"));
+        when(mongoTemplate.exists(any(Query.class), eq("click_events"))).thenReturn(true);
+
+        store.dropExpiredBuckets();
+
+        verify(mongoTemplate, never()).dropCollection(anyString());
+        assertTrue(store.allBuckets().contains("click_events"));
+    }
+}
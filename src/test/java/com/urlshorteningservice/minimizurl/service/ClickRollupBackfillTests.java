@@ -0,0 +1,110 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import com.urlshorteningservice.minimizurl.domain.ClickRollup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * The backfill deletes a window of day rollups and replays the same window from the raw events;
+ * both must cover exactly [fromDay, untilDay), so today's live document is never touched.
+ */
+class ClickRollupBackfillTests {
+
+    private static final LocalDate FROM = LocalDate.parse("2026-03-01");
+    private static final LocalDate UNTIL = LocalDate.parse("2026-03-03");
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final ClickEventStore clickEventStore = mock(ClickEventStore.class);
+    private final List<String> upserted = new ArrayList<>();
+
+    ClickRollupBackfillTests() {
+        when(mongoTemplate.remove(any(Query.class), eq(ClickRollup.class))).thenReturn(DeleteResult.acknowledged(4));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClickRollup.class)).thenReturn(bulk);
+        when(bulk.upsert(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            upserted.add((String) invocation.<Query>getArgument(0).getQueryObject().get("_id"));
+            return bulk;
+        });
+        when(clickEventStore.bucketsSince(any(Instant.class)))
+                .thenReturn(List.of("click_events_2026_02", "click_events_2026_03"));
+    }
+
+    @Test
+    void deletesAndReplaysTheSameHalfOpenWindow() {
+        when(mongoTemplate.stream(any(Query.class), eq(ClickEvent.class), anyString()))
+                .thenAnswer(invocation -> "click_events_2026_03".equals(invocation.getArgument(2))
+                        ? List.of(event(1, "2026-03-01T00:00:00Z"), event(1, "2026-03-02T23:59:59Z"),
+                                event(2, "2026-03-02T10:00:00Z")).stream()
+                        : List.<ClickEvent>of().stream());
+
+        backfill(10_000).backfill(FROM, UNTIL);
+
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        InOrder inOrder = inOrder(mongoTemplate, bulk);
+        inOrder.verify(mongoTemplate).remove(removed.capture(), eq(ClickRollup.class));
+        inOrder.verify(bulk).execute();
+        Document days = removed.getValue().getQueryObject().get("day", Document.class);
+        assertEquals(new Document("$gte", "2026-03-01").append("$lt", "2026-03-03"), days);
+
+        ArgumentCaptor<Query> replayed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).stream(replayed.capture(), eq(ClickEvent.class), anyString());
+        Document timestamps = replayed.getValue().getQueryObject().get("timestamp", Document.class);
+        assertEquals(Instant.parse("2026-03-01T00:00:00Z"), instant(timestamps.get("$gte")));
+        assertEquals(Instant.parse("2026-03-03T00:00:00Z"), instant(timestamps.get("$lt")));
+        verify(clickEventStore).bucketsSince(Instant.parse("2026-03-01T00:00:00Z"));
+
+        assertEquals(List.of("1:2026-03-01", "1:2026-03-02", "2:2026-03-02"), upserted.stream().sorted().toList());
+    }
+
+    @Test
+    void largeReplaysAreWrittenInBoundedFlushes() {
+        when(mongoTemplate.stream(any(Query.class), eq(ClickEvent.class), anyString()))
+                .thenAnswer(invocation -> List.of(event(1, "2026-03-01T08:00:00Z"), event(2, "2026-03-01T08:00:00Z"),
+                        event(3, "2026-03-01T08:00:00Z")).stream());
+
+        backfill(2).backfill(FROM, UNTIL);
+
+        // Three links in each of two buckets, flushed every two keys: six upserts in three writes
+        verify(bulk, times(3)).execute();
+        assertEquals(6, upserted.size());
+    }
+
+    private ClickRollupBackfill backfill(int flushKeys) {
+        ClickRollupService service = new ClickRollupService(mongoTemplate, new SimpleMeterRegistry(), 100);
+        return new ClickRollupBackfill(mongoTemplate, service, clickEventStore, true, flushKeys,
+                Duration.ofDays(400));
+    }
+
+    private static ClickEvent event(long urlId, String timestamp) {
+        ClickEvent event = new ClickEvent(urlId, null, "test", "owner-1", "visitor-1");
+        ReflectionTestUtils.setField(event, "timestamp", Instant.parse(timestamp));
+        return event;
+    }
+
+    private static Instant instant(Object value) {
+        return value instanceof Date date ? date.toInstant() : (Instant) value;
+    }
+}
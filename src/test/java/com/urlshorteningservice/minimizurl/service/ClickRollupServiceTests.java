@@ -0,0 +1,132 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.ClickEvent;
+import com.urlshorteningservice.minimizurl.domain.ClickRollup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ClickRollupServiceTests {
+
+    private static final Instant CLICKED_AT = Instant.parse("2026-03-01T12:00:00Z");
+    private static final String ROLLUP_ID = "7:2026-03-01";
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    // $inc of every upsert, by rollup id
+    private final Map<String, Document> increments = new HashMap<>();
+
+    ClickRollupServiceTests() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ClickRollup.class)).thenReturn(bulk);
+        when(bulk.upsert(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Update update = invocation.getArgument(1);
+            increments.put((String) query.getQueryObject().get("_id"),
+                    update.getUpdateObject().get("$inc", Document.class));
+            return bulk;
+        });
+    }
+
+    @Test
+    void referrersPastTheCapAreFoldedIntoOtherBusiestFirst() {
+        ClickRollupService service = service(2);
+        // One key is already stored, so only the busiest newcomer still fits
+        stored(Map.of("a", 3L));
+
+        service.onBatch(events(Map.of("a", 1, "b", 5, "c", 3, "d", 1)));
+
+        Document inc = increments.get(ROLLUP_ID);
+        assertEquals(10L, inc.get("total"));
+        assertEquals(Map.of("a", 1L, "b", 5L, ClickRollupService.OTHER, 4L), referrers(inc));
+    }
+
+    @Test
+    void documentAtTheCapOnlyGrowsItsStoredKeys() {
+        ClickRollupService service = service(2);
+        stored(Map.of("a", 3L, "b", 1L, ClickRollupService.OTHER, 8L));
+
+        service.onBatch(events(Map.of("a", 2, "c", 1, "d", 2)));
+
+        // "Other" does not count towards the cap, and keeps growing
+        assertEquals(Map.of("a", 2L, ClickRollupService.OTHER, 3L), referrers(increments.get(ROLLUP_ID)));
+    }
+
+    @Test
+    void referrerKeysAreEscapedInTheUpdate() {
+        ClickRollupService service = service(100);
+        stored(Map.of());
+
+        service.onBatch(events(Map.of("https://news.example.com/", 2, "$where", 1)));
+
+        assertEquals(Map.of("https://news%2Eexample%2Ecom/", 2L, "%24where", 1L),
+                referrers(increments.get(ROLLUP_ID)));
+    }
+
+    @Test
+    void keyCodecRoundTripsAndNeverEmitsDotsOrLeadingDollars() {
+        List<String> keys = List.of("Direct", "https://example.com/a.b?c=d", "$where", "a$b", "100%",
+                "%2E", "%25", "%.", "%%24", "..", "$.%");
+        for (String key : keys) {
+            String encoded = ClickRollupService.encodeKey(key);
+            assertFalse(encoded.contains("."), encoded);
+            assertFalse(encoded.startsWith("$"), encoded);
+            assertEquals(key, ClickRollupService.decodeKey(encoded), key);
+        }
+        // Keys without special characters are stored as they are
+        assertSame("Direct", ClickRollupService.encodeKey("Direct"));
+    }
+
+    private ClickRollupService service(int maxReferrers) {
+        return new ClickRollupService(mongoTemplate, new SimpleMeterRegistry(), maxReferrers);
+    }
+
+    private void stored(Map<String, Long> referrers) {
+        List<ClickRollup> rollups = new ArrayList<>();
+        if (!referrers.isEmpty()) {
+            ClickRollup rollup = new ClickRollup();
+            rollup.setId(ROLLUP_ID);
+            rollup.setReferrers(referrers);
+            rollups.add(rollup);
+        }
+        when(mongoTemplate.find(any(Query.class), eq(ClickRollup.class))).thenReturn(rollups);
+    }
+
+    private static List<ClickEvent> events(Map<String, Integer> clicksByReferrer) {
+        List<ClickEvent> events = new ArrayList<>();
+        clicksByReferrer.forEach((referrer, clicks) -> {
+            for (int i = 0; i < clicks; i++) {
+                ClickEvent event = new ClickEvent(7L, referrer, "test", "owner-1", "visitor-" + i);
+                ReflectionTestUtils.setField(event, "timestamp", CLICKED_AT);
+                events.add(event);
+            }
+        });
+        return events;
+    }
+
+    // referrers.<key> increments, with the prefix stripped
+    private static Map<String, Long> referrers(Document inc) {
+        Map<String, Long> referrers = new HashMap<>();
+        inc.forEach((field, value) -> {
+            if (field.startsWith("referrers.")) {
+                referrers.put(field.substring("referrers.".length()), ((Number) value).longValue());
+            }
+        });
+        return referrers;
+    }
+}
@@ -0,0 +1,59 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTests {
+
+    @Test
+    void estimatesStayWithinTheDocumentedErrorBound() {
+        for (int cardinality : new int[]{10, 1_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                sketch.offer("visitor-" + i);
+                sketch.offer("visitor-" + i); // Repeat visits must not count
+            }
+            double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+            // Three standard errors (3 x 2.3%)
+            assertTrue(error < 0.07, "cardinality " + cardinality + " estimated " + sketch.estimate());
+        }
+    }
+
+    @Test
+    void mergeIsAUnionAndIsIdempotent() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            monday.offer("visitor-" + i);
+            tuesday.offer("visitor-" + (i + 20_000)); // 10k visitors seen on both days
+        }
+        HyperLogLog week = new HyperLogLog();
+        week.merge(monday);
+        week.merge(tuesday);
+        week.merge(tuesday);
+
+        assertEquals(50_000, week.estimate(), 50_000 * 0.07);
+    }
+
+    @Test
+    void serializedFormRoundTripsInBothEncodings() {
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 20; i++) {
+            small.offer("visitor-" + i);
+        }
+        byte[] sparse = small.toBytes();
+        assertTrue(sparse.length < 100);
+        assertEquals(small.estimate(), HyperLogLog.fromBytes(sparse).estimate());
+
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            large.offer("visitor-" + i);
+        }
+        byte[] dense = large.toBytes();
+        assertEquals(1 + HyperLogLog.REGISTERS, dense.length);
+        assertEquals(large.estimate(), HyperLogLog.fromBytes(dense).estimate());
+
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[]{7}));
+    }
+}
@@ -0,0 +1,122 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LinkExportServiceTests {
+
+    private static final Instant CREATED = Instant.parse("2026-03-01T12:00:00Z");
+
+    private final ShorteningService shorteningService = new ShorteningService();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LinkExportService service = new LinkExportService(mongoTemplate, shorteningService, objectMapper, 500);
+
+    @Test
+    void formulaLeadingCellsArePrefixed() {
+        assertEquals("'=SUM(A1:A9)", LinkExportService.csvValue("=SUM(A1:A9)"));
+        assertEquals("'+1", LinkExportService.csvValue("+1"));
+        assertEquals("'-1", LinkExportService.csvValue("-1"));
+        assertEquals("'@SUM(A1)", LinkExportService.csvValue("@SUM(A1)"));
+        assertEquals("'\tcmd", LinkExportService.csvValue("\tcmd"));
+        assertEquals("https://example.com/=x", LinkExportService.csvValue("https://example.com/=x"));
+    }
+
+    @Test
+    void cellsWithSeparatorsQuotesOrLineBreaksAreQuoted() {
+        assertEquals("\"a,b\"", LinkExportService.csvValue("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", LinkExportService.csvValue("say \"hi\""));
+        assertEquals("\"line1\nline2\"", LinkExportService.csvValue("line1\nline2"));
+        assertEquals("\"line1\r\nline2\"", LinkExportService.csvValue("line1\r\nline2"));
+        // Prefixed first, then quoted as a whole
+        assertEquals("\"'=1,2\"", LinkExportService.csvValue("=1,2"));
+        assertEquals("\"'\r=x\"", LinkExportService.csvValue("\r=x"));
+        assertEquals("\"'=HYPERLINK(\"\"https://evil.example\"\")\"",
+                LinkExportService.csvValue("=HYPERLINK(\"https://evil.example\")"));
+    }
+
+    @Test
+    void numbersAndMissingValuesAreLeftAlone() {
+        assertEquals("-5", LinkExportService.csvValue(-5L));
+        assertEquals("42", LinkExportService.csvValue(42L));
+        assertEquals("", LinkExportService.csvValue(null));
+        assertEquals("", LinkExportService.csvValue(""));
+        assertEquals("plain", LinkExportService.csvValue("plain"));
+    }
+
+    @Test
+    void csvExportHasAHeaderAndOneRowPerLink() throws Exception {
+        links(link(125, "https://example.com/a,b", null), link(126, "=cmd()", "promo"));
+
+        String csv = export(LinkExportService.Format.CSV, false);
+
+        assertEquals(String.join("\r\n",
+                "shortCode,id,originalUrl,customCode,createdDate,expirationDate",
+                shorteningService.encode(125) + ",125,\"https://example.com/a,b\",," + CREATED + ",",
+                "promo,126,'=cmd(),promo," + CREATED + ",") + "\r\n", csv);
+    }
+
+    @Test
+    void ndjsonExportWritesOneObjectPerLineWithClickColumns() throws Exception {
+        Document clicked = link(125, "https://example.com/a", null)
+                .append("clicks", 7)
+                .append("lastClick", Date.from(CREATED.plusSeconds(60)));
+        links(clicked, link(126, "https://example.com/b", "promo"));
+
+        String[] lines = export(LinkExportService.Format.NDJSON, true).split("\n");
+
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(List.of("shortCode", "id", "originalUrl", "customCode", "createdDate", "expirationDate",
+                "clicks", "lastClick"), fieldNames(first));
+        assertEquals(shorteningService.encode(125), first.get("shortCode").asText());
+        assertEquals(7, first.get("clicks").asLong());
+        assertEquals(CREATED.plusSeconds(60).toString(), first.get("lastClick").asText());
+        assertTrue(first.get("customCode").isNull());
+
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertEquals("promo", second.get("shortCode").asText());
+        assertEquals(0, second.get("clicks").asLong());
+        assertTrue(second.get("lastClick").isNull());
+    }
+
+    private void links(Document... links) {
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq("url_mappings"), eq(Document.class)))
+                .thenAnswer(invocation -> List.of(links).stream());
+    }
+
+    private String export(LinkExportService.Format format, boolean withClicks) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export("owner-1", format, withClicks, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Document link(long id, String url, String customCode) {
+        return new Document("_id", id)
+                .append("originalUrl", url)
+                .append("customCode", customCode)
+                .append("createdDate", Date.from(CREATED));
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
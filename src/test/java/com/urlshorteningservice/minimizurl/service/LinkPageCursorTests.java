@@ -0,0 +1,69 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.exception.InvalidRequestException;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkPageCursorTests {
+
+    @Test
+    void roundTripsCreatedDateAndId() {
+        LinkPageCursor cursor = new LinkPageCursor(Instant.parse("2025-03-01T12:30:00.123Z"), 9_007_199_254_740_993L);
+
+        String token = cursor.encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+        assertEquals(cursor, LinkPageCursor.decode(token));
+    }
+
+    @Test
+    void roundTripsLinksWithoutCreatedDate() {
+        LinkPageCursor cursor = new LinkPageCursor(null, 42);
+        assertEquals(cursor, LinkPageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertInvalid("not base64!");
+        assertInvalid(token("v2:"));
+        assertInvalid(token("v2:123"));
+        assertInvalid(token("v2:abc:1"));
+        assertInvalid(token("v2:123:"));
+        assertInvalid(token("v3:123:1"));
+    }
+
+    @Test
+    void rejectsIdOnlyCursorsFromBeforeTheSortChange() {
+        InvalidRequestException e = assertThrows(InvalidRequestException.class,
+                () -> LinkPageCursor.decode(token("v1:12345")));
+        assertTrue(e.getMessage().contains("first page"), e.getMessage());
+    }
+
+    @Test
+    void afterCoversTiesAndLinksWithoutCreatedDate() {
+        Instant created = Instant.parse("2025-03-01T12:30:00Z");
+        Document criteria = new LinkPageCursor(created, 7).after().getCriteriaObject();
+
+        assertEquals(List.of(
+                new Document("createdDate", new Document("$lt", created)),
+                new Document("createdDate", created).append("_id", new Document("$lt", 7L)),
+                new Document("createdDate", null)), criteria.get("$or"));
+        assertEquals(new Document("createdDate", null).append("_id", new Document("$lt", 7L)),
+                new LinkPageCursor(null, 7).after().getCriteriaObject());
+    }
+
+    private static void assertInvalid(String cursor) {
+        assertThrows(InvalidRequestException.class, () -> LinkPageCursor.decode(cursor));
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,149 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedRedirectTableTests {
+
+    private static final long MAX_DATA = 1 << 20;
+    private static final Instant BUILT_AT = Instant.parse("2025-06-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void putGetUpdateAndRemove() throws Exception {
+        try (MappedRedirectTable table = create("t", 1024)) {
+            Instant expiry = Instant.parse("2030-01-01T00:00:00Z");
+            assertTrue(table.put("abc", new CachedMapping(7, "https://example.com/a", "owner-1", expiry)));
+            assertTrue(table.put("guest", new CachedMapping(8, "https://example.com/b", null, null)));
+
+            assertEquals(new CachedMapping(7, "https://example.com/a", "owner-1", expiry), table.get("abc"));
+            assertEquals(new CachedMapping(8, "https://example.com/b", null, null), table.get("guest"));
+            assertNull(table.get("missing"));
+
+            assertTrue(table.put("abc", new CachedMapping(7, "https://example.com/updated", "owner-1", expiry)));
+            assertEquals("https://example.com/updated", table.get("abc").originalUrl());
+            assertEquals(2, table.usedSlots());
+
+            assertTrue(table.remove("abc"));
+            assertNull(table.get("abc"));
+            assertFalse(table.remove("abc"));
+            // A removed code can be stored again
+            assertTrue(table.put("abc", new CachedMapping(9, "https://example.com/c", null, null)));
+            assertEquals(9, table.get("abc").id());
+        }
+    }
+
+    @Test
+    void readyTableSurvivesReopen() throws Exception {
+        try (MappedRedirectTable table = create("t", 1024)) {
+            for (int i = 0; i < 500; i++) {
+                assertTrue(table.put("code" + i, new CachedMapping(i, "https://example.com/" + i, null, null)));
+            }
+            table.markReady();
+        }
+        try (MappedRedirectTable reopened = open("t")) {
+            assertEquals(BUILT_AT, reopened.builtAt());
+            for (int i = 0; i < 500; i++) {
+                assertEquals("https://example.com/" + i, reopened.get("code" + i).originalUrl());
+            }
+            assertEquals(500, reopened.usedSlots());
+        }
+    }
+
+    @Test
+    void unfinishedBuildIsNotReopened() throws Exception {
+        try (MappedRedirectTable table = create("t", 1024)) {
+            table.put("abc", new CachedMapping(1, "https://example.com", null, null));
+        }
+        assertThrows(java.io.IOException.class, () -> open("t"));
+    }
+
+    @Test
+    void collidingCodesProbeAndFillUpToLoadFactor() throws Exception {
+        // 16 slots hold at most 12 entries, so most of them share a home slot with another code
+        try (MappedRedirectTable table = create("t", 16)) {
+            for (int i = 0; i < 12; i++) {
+                assertTrue(table.put("c" + i, new CachedMapping(i, "https://example.com/" + i, null, null)));
+            }
+            assertFalse(table.put("one-too-many", new CachedMapping(99, "https://example.com", null, null)));
+            for (int i = 0; i < 12; i++) {
+                assertEquals(i, table.get("c" + i).id());
+            }
+
+            // Removing in the middle of a probe chain must not hide the codes behind it
+            assertTrue(table.remove("c3"));
+            for (int i = 0; i < 12; i++) {
+                assertEquals(i == 3, table.get("c" + i) == null);
+            }
+        }
+    }
+
+    @Test
+    void fullDataFileRejectsWrites() throws Exception {
+        try (MappedRedirectTable table = MappedRedirectTable.create(dir.resolve("t.idx"), dir.resolve("t.dat"), 1024, 256,
+                BUILT_AT)) {
+            String url = "https://example.com/" + "x".repeat(100);
+            assertTrue(table.put("a", new CachedMapping(1, url, null, null)));
+            assertFalse(table.put("b", new CachedMapping(2, url, null, null)));
+            assertNull(table.get("b"));
+            assertEquals(1, table.get("a").id());
+        }
+    }
+
+    @Test
+    void corruptedRecordReadsAsMiss() throws Exception {
+        try (MappedRedirectTable table = create("t", 1024)) {
+            table.put("abc", new CachedMapping(1, "https://example.com/a", null, null));
+            table.put("def", new CachedMapping(2, "https://example.com/b", null, null));
+            table.markReady();
+        }
+        // First record starts at offset 8; flip a byte of its URL
+        try (RandomAccessFile data = new RandomAccessFile(dir.resolve("t.dat").toFile(), "rw")) {
+            data.seek(8 + 40);
+            int original = data.read();
+            data.seek(8 + 40);
+            data.write(original ^ 0xff);
+        }
+        try (MappedRedirectTable reopened = open("t")) {
+            assertNull(reopened.get("abc"));
+            assertEquals(2, reopened.get("def").id());
+        }
+    }
+
+    @Test
+    void removeIfScansAllEntries() throws Exception {
+        try (MappedRedirectTable table = create("t", 1024)) {
+            for (int i = 0; i < 100; i++) {
+                table.put("code" + i, new CachedMapping(i, "https://example.com/" + i, i % 2 == 0 ? "even" : "odd", null));
+            }
+            assertEquals(50, table.removeIf(mapping -> "even".equals(mapping.userId())));
+            assertNull(table.get("code0"));
+            assertEquals(1, table.get("code1").id());
+        }
+    }
+
+    @Test
+    void capacityKeepsLoadUnderThreeQuarters() {
+        assertEquals(16, MappedRedirectTable.capacityFor(12));
+        assertEquals(32, MappedRedirectTable.capacityFor(13));
+        assertEquals(MappedRedirectTable.MAX_CAPACITY, MappedRedirectTable.capacityFor(Long.MAX_VALUE / 2));
+    }
+
+    private MappedRedirectTable create(String name, long capacity) throws Exception {
+        return MappedRedirectTable.create(dir.resolve(name + ".idx"), dir.resolve(name + ".dat"), capacity, MAX_DATA,
+                BUILT_AT);
+    }
+
+    private MappedRedirectTable open(String name) throws Exception {
+        return MappedRedirectTable.open(dir.resolve(name + ".idx"), dir.resolve(name + ".dat"), MAX_DATA);
+    }
+}
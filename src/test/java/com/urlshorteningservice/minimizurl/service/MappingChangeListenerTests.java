@@ -0,0 +1,198 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against a real single-node replica set, e.g.
+ * mongod --replSet rs0 and rs.initiate(), then
+ * MINIMIZURL_REPLICA_SET_URI=mongodb://localhost:27017/?replicaSet=rs0 mvn test
+ * Writes made through the template stand in for another node.
+ */
+@EnabledIfEnvironmentVariable(named = "MINIMIZURL_REPLICA_SET_URI", matches = ".+")
+class MappingChangeListenerTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    private MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private String database;
+    private SimpleMeterRegistry registry;
+    private ShorteningService shorteningService;
+    private UrlMappingCache cache;
+    private RedirectTable redirectTable;
+    private ShortCodeFilter filter;
+    private MappingChangeListener listener;
+
+    @BeforeEach
+    void setUp() {
+        client = MongoClients.create(System.getenv("MINIMIZURL_REPLICA_SET_URI"));
+        database = "minimizurl_coherence_" + UUID.randomUUID().toString().substring(0, 8);
+        mongoTemplate = new MongoTemplate(client, database);
+        registry = new SimpleMeterRegistry();
+        shorteningService = new ShorteningService();
+        cache = new UrlMappingCache(1000, Duration.ofMinutes(10), Duration.ofHours(24), Duration.ofMinutes(1),
+                Duration.ofSeconds(5), 1, registry);
+        redirectTable = newRedirectTable();
+        filter = new ShortCodeFilter(mongoTemplate, shorteningService, registry, true, 1000, 0.01,
+                DataSize.ofMegabytes(1), 1000, Duration.ofSeconds(30), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (listener != null) {
+            listener.stop();
+        }
+        cache.shutdown();
+        redirectTable.close();
+        client.getDatabase(database).drop();
+        client.close();
+    }
+
+    @Test
+    void urlChangedElsewhereReachesCacheAndTable() {
+        UrlMapping mapping = save(1, "https://example.com/old");
+        String code = shorteningService.encode(1);
+        startListener();
+        redirectTable.rebuild();
+        cache.put(code, CachedMapping.from(mapping));
+
+        updateUrl(1, code, "https://example.com/new");
+
+        awaitTrue(() -> "https://example.com/new".equals(redirectTable.get(code).originalUrl()));
+        // The loader only runs once the old entry is gone
+        assertEquals("reloaded", cache.get(code, c -> cached("reloaded")).originalUrl());
+    }
+
+    @Test
+    void deletionElsewhereEvictsCode() {
+        save(2, "https://example.com/doomed");
+        String code = shorteningService.encode(2);
+        startListener();
+        redirectTable.rebuild();
+        assertNotNull(redirectTable.get(code));
+
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(code)), ShortCode.class);
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(2L)), UrlMapping.class);
+
+        awaitTrue(() -> redirectTable.get(code) == null);
+    }
+
+    @Test
+    void codeCreatedElsewherePassesTheFilter() {
+        startListener();
+        filter.recordMiss("promo", filter.missStamp("promo"));
+
+        UrlMapping mapping = new UrlMapping(3, "https://example.com/promo", expiry());
+        mapping.setCustomCode("promo");
+        mongoTemplate.insert(ShortCode.of("promo", mapping));
+
+        awaitTrue(() -> !filter.isDefinitelyAbsent("promo"));
+    }
+
+    @Test
+    void changesWhileStoppedAreReplayedFromTheSavedToken() {
+        UrlMapping mapping = save(4, "https://example.com/old");
+        String code = shorteningService.encode(4);
+        startListener();
+        // Let the saved token move past the stream's start
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(code)),
+                new Update().set("originalUrl", "https://example.com/old"), ShortCode.class);
+        listener.stop();
+
+        updateUrl(4, code, "https://example.com/new");
+        cache.put(code, CachedMapping.from(mapping));
+        startListener();
+
+        awaitTrue(() -> "reloaded".equals(cache.get(code, c -> cached("reloaded")).originalUrl()));
+    }
+
+    @Test
+    void tableCoveredBySavedTokenIsServedAfterRestart() {
+        save(5, "https://example.com/kept");
+        String code = shorteningService.encode(5);
+        startListener();
+        redirectTable.rebuild();
+        listener.stop();
+        redirectTable.close();
+
+        redirectTable = newRedirectTable();
+        redirectTable.openExisting();
+        assertNull(redirectTable.get(code));
+        startListener();
+
+        awaitTrue(() -> redirectTable.get(code) != null);
+    }
+
+    private RedirectTable newRedirectTable() {
+        return new RedirectTable(mongoTemplate, registry, true, dir.resolve("table"), 1000,
+                DataSize.ofMegabytes(1), Duration.ofHours(24));
+    }
+
+    private void startListener() {
+        listener = new MappingChangeListener(mongoTemplate, cache, redirectTable, filter, shorteningService, registry,
+                true, dir.resolve("token"), Duration.ofMillis(100));
+        listener.start();
+        awaitTrue(listener::isFollowing);
+    }
+
+    private UrlMapping save(long id, String url) {
+        UrlMapping mapping = new UrlMapping(id, url, expiry());
+        mongoTemplate.insert(ShortCode.of(shorteningService.encode(id), mapping));
+        return mongoTemplate.insert(mapping);
+    }
+
+    private void updateUrl(long id, String code, String url) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)), new Update().set("originalUrl", url),
+                UrlMapping.class);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(code)), new Update().set("originalUrl", url),
+                ShortCode.class);
+    }
+
+    private static CachedMapping cached(String url) {
+        return new CachedMapping(0, url, null, null);
+    }
+
+    private static Instant expiry() {
+        return Instant.now().plus(30, ChronoUnit.DAYS);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within " + TIMEOUT);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import com.urlshorteningservice.minimizurl.repository.UrlMappingRepository;
+import com.urlshorteningservice.minimizurl.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * The table must never answer with a target the database no longer has: it is only served while
+ * the change stream covers it, a restart only reuses a young table whose token was saved for it,
+ * and redirect reads never write to it.
+ */
+class RedirectTableTests {
+
+    private static final Duration MAX_AGE = Duration.ofHours(24);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final List<ShortCode> codes = new ArrayList<>();
+    private final List<RedirectTable> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.stream(any(Query.class), eq(ShortCode.class)))
+                .thenAnswer(invocation -> List.copyOf(codes).stream());
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(RedirectTable::close);
+    }
+
+    @Test
+    void tableOlderThanMaxAgeIsNotMappedAfterRestart() throws Exception {
+        Path tableDir = dir.resolve("table");
+        Files.createDirectories(tableDir);
+        Instant builtAt = Instant.now().minus(2, ChronoUnit.DAYS);
+        String name = "redirects-" + builtAt.toEpochMilli();
+        try (MappedRedirectTable old = MappedRedirectTable.create(tableDir.resolve(name + ".idx"),
+                tableDir.resolve(name + ".dat"), 1024, 1 << 20, builtAt)) {
+            old.put("abc", new CachedMapping(7, "https://example.com/deleted", null, null));
+            old.markReady();
+        }
+        Files.writeString(tableDir.resolve("CURRENT"), name, StandardCharsets.UTF_8);
+
+        RedirectTable table = newTable();
+        table.openExisting();
+        table.startedFollowing(true, name);
+
+        assertNull(table.get("abc"));
+        assertNull(table.coveredTable());
+        assertFalse(Files.exists(tableDir.resolve("CURRENT")));
+        assertFalse(Files.exists(tableDir.resolve(name + ".idx")));
+    }
+
+    @Test
+    void tableIsServedOnlyWhileTheChangeStreamCoversIt() {
+        code("abc", 7, "https://example.com/a");
+        RedirectTable table = newTable();
+        table.rebuild();
+        assertNull(table.get("abc"));
+
+        // Changes made before the stream opened may be missing from this table: a fresh one is built
+        table.startedFollowing(false, null);
+        awaitTrue(() -> table.get("abc") != null);
+        assertNotNull(table.coveredTable());
+
+        table.stoppedFollowing();
+        assertNull(table.get("abc"));
+    }
+
+    @Test
+    void reopenedTableIsServedOnlyWithATokenSavedForIt() {
+        code("abc", 7, "https://example.com/a");
+        RedirectTable first = newTable();
+        first.startedFollowing(false, null);
+        first.rebuild();
+        String name = first.coveredTable();
+        assertNotNull(name);
+        first.close();
+
+        RedirectTable resumed = newTable();
+        resumed.openExisting();
+        assertNull(resumed.get("abc"));
+        resumed.startedFollowing(true, name);
+        assertEquals("https://example.com/a", resumed.get("abc").originalUrl());
+        resumed.close();
+
+        RedirectTable mismatched = newTable();
+        mismatched.openExisting();
+        mismatched.startedFollowing(true, "redirects-0");
+        assertNull(mismatched.get("abc"));
+        awaitTrue(() -> mismatched.get("abc") != null);
+        assertNotEquals(name, mismatched.coveredTable());
+    }
+
+    @Test
+    void readRacingADeleteDoesNotStoreTheDeletedTarget() {
+        RedirectTable table = followingTable();
+        // The read finds the code, then the delete removes it from the table before the read returns
+        UrlService urlService = urlService(table, shortCode("abc", 7, "https://example.com/deleted"),
+                () -> table.remove("abc", 7L));
+
+        assertEquals("https://example.com/deleted", urlService.getOriginalUrl("abc", null, null, null, null));
+
+        assertNull(table.get("abc"));
+    }
+
+    @Test
+    void readRacingAnUpdateDoesNotRestoreTheOldTarget() {
+        // An expired entry sends redirects to the database while the table still holds the code
+        code("abc", 7, "https://example.com/old");
+        RedirectTable table = followingTable();
+        table.put("abc", new CachedMapping(7, "https://example.com/old", null, Instant.now().minusSeconds(1)));
+        UrlService urlService = urlService(table, shortCode("abc", 7, "https://example.com/old"),
+                () -> table.replace("abc", new CachedMapping(7, "https://example.com/new", null, expiry())));
+
+        urlService.getOriginalUrl("abc", null, null, null, null);
+
+        assertEquals("https://example.com/new", table.get("abc").originalUrl());
+    }
+
+    // The database answers with 'read', and 'write' runs on another thread before that answer returns
+    private UrlService urlService(RedirectTable table, ShortCode read, Runnable write) {
+        when(mongoTemplate.findById("abc", ShortCode.class)).thenAnswer(invocation -> {
+            Thread writer = new Thread(write);
+            writer.start();
+            writer.join();
+            return read;
+        });
+        ShorteningService shorteningService = new ShorteningService();
+        UrlMappingCache cache = new UrlMappingCache(1000, Duration.ofMinutes(10), Duration.ofHours(24),
+                Duration.ofMinutes(1), Duration.ofSeconds(5), 1, registry);
+        return new UrlService(mock(UrlMappingRepository.class), shorteningService, mock(SequenceGeneratorService.class),
+                mongoTemplate, mock(UserRepository.class), cache, mock(ShortCodeFilter.class),
+                mock(ClickCounterBuffer.class), mock(ClickEventPipeline.class), mock(UniqueVisitorCounter.class),
+                new ShortCodeIndex(mongoTemplate, shorteningService, false),
+                new CircuitBreaker("mongo", 100, 20, 0.5, Duration.ofMillis(500), Duration.ofSeconds(10), 5, registry),
+                table);
+    }
+
+    private RedirectTable followingTable() {
+        RedirectTable table = newTable();
+        table.startedFollowing(false, null);
+        table.rebuild();
+        assertNotNull(table.coveredTable());
+        return table;
+    }
+
+    private RedirectTable newTable() {
+        RedirectTable table = new RedirectTable(mongoTemplate, registry, true, dir.resolve("table"), 1000,
+                DataSize.ofMegabytes(1), MAX_AGE);
+        opened.add(table);
+        return table;
+    }
+
+    private void code(String code, long id, String url) {
+        codes.add(shortCode(code, id, url));
+    }
+
+    private static ShortCode shortCode(String code, long id, String url) {
+        return ShortCode.of(code, new UrlMapping(id, url, expiry()));
+    }
+
+    private static Instant expiry() {
+        return Instant.now().plus(30, ChronoUnit.DAYS);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within " + TIMEOUT);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
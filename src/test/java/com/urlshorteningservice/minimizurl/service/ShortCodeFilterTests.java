@@ -0,0 +1,109 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ShortCodeFilterTests {
+
+    private final ShorteningService shorteningService = new ShorteningService();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    ShortCodeFilterTests() {
+        when(mongoTemplate.stream(any(Query.class), eq(UrlMapping.class)))
+                .thenAnswer(invocation -> Stream.of(new UrlMapping(1, "https://example.com", null)));
+    }
+
+    @Test
+    void absenceIsTrustedWithinTheVisibilityWindow() {
+        ShortCodeFilter filter = filter(Duration.ofHours(1));
+        filter.rebuild();
+
+        assertTrue(filter.isDefinitelyAbsent("unknown"));
+        assertFalse(filter.isDefinitelyAbsent(shorteningService.encode(1)));
+    }
+
+    @Test
+    void withoutTheChangeStreamAnOldFilterDefersToTheDatabase() {
+        ShortCodeFilter filter = filter(Duration.ZERO);
+        filter.rebuild();
+
+        // Could have been created on another node since the load
+        assertFalse(filter.isDefinitelyAbsent("unknown"));
+    }
+
+    @Test
+    void followingSinceBeforeTheLoadKeepsTheFilterTrusted() {
+        ShortCodeFilter filter = filter(Duration.ZERO);
+        filter.setFollowing(true, false);
+        filter.rebuild();
+
+        assertTrue(filter.isDefinitelyAbsent("unknown"));
+
+        filter.setFollowing(false, false);
+        assertFalse(filter.isDefinitelyAbsent("unknown"));
+
+        // A resumed stream replays the gap, so nothing created meanwhile was missed
+        filter.setFollowing(true, true);
+        assertTrue(filter.isDefinitelyAbsent("unknown"));
+
+        // A fresh stream may have skipped creations; only the next load is trusted again
+        filter.setFollowing(false, false);
+        filter.setFollowing(true, false);
+        assertFalse(filter.isDefinitelyAbsent("unknown"));
+        filter.rebuild();
+        assertTrue(filter.isDefinitelyAbsent("unknown"));
+    }
+
+    @Test
+    void missIsCachedWhenNothingRegisteredMeanwhile() {
+        ShortCodeFilter filter = filter(Duration.ZERO);
+        long stamp = filter.missStamp("unknown");
+
+        filter.recordMiss("unknown", stamp);
+
+        assertTrue(filter.isDefinitelyAbsent("unknown"));
+    }
+
+    @Test
+    void missFromALookupThatRacedACreationIsDropped() {
+        ShortCodeFilter filter = filter(Duration.ZERO);
+        String code = shorteningService.encode(7);
+
+        // The lookup misses, the link is created and registered, then the lookup reports its miss
+        long codeStamp = filter.missStamp(code);
+        long customStamp = filter.missStamp("promo");
+        filter.register(7, "promo");
+        filter.recordMiss(code, codeStamp);
+        filter.recordMiss("promo", customStamp);
+
+        assertFalse(filter.isDefinitelyAbsent(code));
+        assertFalse(filter.isDefinitelyAbsent("promo"));
+    }
+
+    @Test
+    void registrationAfterTheMissRemovesIt() {
+        ShortCodeFilter filter = filter(Duration.ZERO);
+        String code = shorteningService.encode(7);
+        filter.recordMiss(code, filter.missStamp(code));
+
+        filter.register(7, null);
+
+        assertFalse(filter.isDefinitelyAbsent(code));
+    }
+
+    private ShortCodeFilter filter(Duration visibilityWindow) {
+        return new ShortCodeFilter(mongoTemplate, shorteningService, new SimpleMeterRegistry(), true, 1000, 0.01,
+                DataSize.ofMegabytes(1), 1000, Duration.ofSeconds(30), visibilityWindow);
+    }
+}
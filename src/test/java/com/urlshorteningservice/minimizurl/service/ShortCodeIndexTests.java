@@ -0,0 +1,116 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ShortCodeIndexTests {
+
+    private final ShorteningService shorteningService = new ShorteningService();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+
+    ShortCodeIndexTests() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ShortCode.class)).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenReturn(bulk);
+    }
+
+    @Test
+    void legacyClaimCannotTakeTheCodeOfALinkNotYetBackfilled() {
+        ShortCodeIndex index = new ShortCodeIndex(mongoTemplate, shorteningService, true);
+        legacyMappings(new UrlMapping(125, "https://example.com/old", null));
+
+        assertFalse(index.claim(shorteningService.encode(125), mapping(900)));
+        verify(mongoTemplate, never()).insert(any(ShortCode.class));
+    }
+
+    @Test
+    void legacyClaimChecksBothTheIdAndTheCustomCode() {
+        ShortCodeIndex index = new ShortCodeIndex(mongoTemplate, shorteningService, true);
+
+        assertTrue(index.claim("promo", mapping(900)));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(UrlMapping.class));
+        String criteria = query.getValue().getQueryObject().toJson();
+        assertTrue(criteria.contains("\"customCode\""), criteria);
+        // "promo" is also valid base62, so it could be the generated code of some existing id
+        assertTrue(criteria.contains(String.valueOf(shorteningService.decode("promo"))), criteria);
+    }
+
+    @Test
+    void reservedCodesAreNeverClaimed() {
+        ShortCodeIndex index = new ShortCodeIndex(mongoTemplate, shorteningService, false);
+
+        // "stats" is valid base62: some id's generated code is reserved too
+        assertFalse(index.claim("stats", mapping(900)));
+        Set<Integer> rejected = index.claimAll(List.of(ShortCode.of("shorten", mapping(901)),
+                ShortCode.of("promo", mapping(902))));
+
+        assertEquals(Set.of(0), rejected);
+        verify(mongoTemplate, never()).insert(any(ShortCode.class));
+        verify(bulk).insert(List.of(ShortCode.of("promo", mapping(902))));
+    }
+
+    @Test
+    void claimWithoutLegacyLookupNeverReadsUrlMappings() {
+        ShortCodeIndex index = new ShortCodeIndex(mongoTemplate, shorteningService, false);
+
+        assertTrue(index.claim("promo", mapping(900)));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(UrlMapping.class));
+    }
+
+    @Test
+    void claimAllMapsBulkErrorsPastLegacyRejections() {
+        ShortCodeIndex index = new ShortCodeIndex(mongoTemplate, shorteningService, true);
+        UrlMapping legacy = new UrlMapping(7, "https://example.com/old", null);
+        legacy.setCustomCode("old-promo");
+        legacyMappings(legacy);
+        // Only three of the four claims reach the insert; its second one ("b") is a duplicate
+        when(bulk.execute()).thenThrow(new BulkOperationException("bulk write failed", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(new BulkWriteError(11000, "dup", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of())));
+
+        List<ShortCode> claims = List.of(code("a"), code("old-promo"), code("b"), code("c"));
+        assertEquals(Set.of(1, 2), index.claimAll(claims));
+    }
+
+    @Test
+    void takenIncludesLegacyCustomCodes() {
+        ShortCodeIndex index = new ShortCodeIndex(mongoTemplate, shorteningService, true);
+        UrlMapping legacy = new UrlMapping(7, "https://example.com/old", null);
+        legacy.setCustomCode("old-promo");
+        legacyMappings(legacy);
+
+        assertEquals(Set.of("old-promo"), index.taken(List.of("old-promo", "fresh")));
+    }
+
+    private void legacyMappings(UrlMapping... mappings) {
+        when(mongoTemplate.find(any(Query.class), eq(UrlMapping.class))).thenReturn(List.of(mappings));
+    }
+
+    private static UrlMapping mapping(long id) {
+        return new UrlMapping(id, "https://example.com/new", null);
+    }
+
+    private static ShortCode code(String code) {
+        return ShortCode.of(code, mapping(900));
+    }
+}
@@ -0,0 +1,46 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShorteningServiceTests {
+
+    private final ShorteningService shorteningService = new ShorteningService();
+
+    @Test
+    void encodeAndDecodeRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long id = random.nextLong() & Long.MAX_VALUE;
+            if (i % 2 == 0) {
+                id %= 10_000_000;
+            }
+            String code = shorteningService.encode(id);
+            assertEquals(id, shorteningService.decode(code));
+            assertTrue(shorteningService.isValidGeneratedCode(code));
+        }
+        assertEquals("0", shorteningService.encode(0));
+        assertEquals("aZl8N0y58M7", shorteningService.encode(Long.MAX_VALUE));
+    }
+
+    @Test
+    void decodeRejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> shorteningService.decode("my-link"));
+        assertThrows(IllegalArgumentException.class, () -> shorteningService.decode("café"));
+        assertThrows(IllegalArgumentException.class, () -> shorteningService.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> shorteningService.decode("ZZZZZZZZZZZ"));
+        assertThrows(IllegalArgumentException.class, () -> shorteningService.encode(-1));
+    }
+
+    @Test
+    void onlyCanonicalCodesAreValidGeneratedCodes() {
+        assertTrue(shorteningService.isValidGeneratedCode("0"));
+        assertFalse(shorteningService.isValidGeneratedCode("0a"));
+        assertFalse(shorteningService.isValidGeneratedCode("my_link"));
+        assertFalse(shorteningService.isValidGeneratedCode("aZl8N0y58M8"));
+        assertFalse(shorteningService.isValidGeneratedCode("abcdefghijkl"));
+    }
+}
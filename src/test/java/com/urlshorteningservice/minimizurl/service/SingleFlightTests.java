@@ -0,0 +1,120 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTests {
+
+    private static final int WAITERS = 16;
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SingleFlight<String, String> flight = new SingleFlight<>("test", Duration.ofSeconds(10), registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(flight, key -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value-" + key;
+        }, release);
+
+        for (Future<String> result : results) {
+            assertEquals("value-abc", result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, registry.get("test.lookups").tag("outcome", "issued").counter().count());
+        assertEquals(WAITERS - 1, registry.get("test.lookups").tag("outcome", "coalesced").counter().count());
+        assertEquals(0, flight.inFlight());
+    }
+
+    @Test
+    void failureReachesEveryWaiter() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", Duration.ofSeconds(10), new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(flight, key -> {
+            await(release);
+            throw new IllegalStateException("mongo down");
+        }, release);
+
+        for (Future<String> result : results) {
+            Exception e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals("mongo down", e.getCause().getMessage());
+        }
+        // The failure is not remembered: the next caller loads again
+        assertEquals("ok", flight.load("abc", key -> "ok"));
+    }
+
+    @Test
+    void waitersTimeOutWhileTheLeaderIsStuck() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", Duration.ofMillis(50), new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService leader = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = leader.submit(() -> flight.load("abc", key -> {
+                started.countDown();
+                await(release);
+                return "late";
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            assertThrows(ServiceUnavailableException.class, () -> flight.load("abc", key -> "unused"));
+
+            release.countDown();
+            assertEquals("late", first.get(10, TimeUnit.SECONDS));
+        } finally {
+            leader.shutdownNow();
+        }
+    }
+
+    // All callers start together; the first to arrive leads, the load blocks until 'release'
+    private static List<Future<String>> runConcurrently(SingleFlight<String, String> flight,
+                                                        Function<String, String> loader,
+                                                        CountDownLatch release) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(WAITERS);
+        CountDownLatch ready = new CountDownLatch(WAITERS);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < WAITERS; i++) {
+            results.add(pool.submit(() -> {
+                ready.countDown();
+                return flight.load("abc", loader);
+            }));
+        }
+        assertTrue(ready.await(10, TimeUnit.SECONDS));
+        // Give every caller time to join the in-flight load before it completes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flight.inFlight() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        Thread.sleep(100);
+        release.countDown();
+        pool.shutdown();
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTests {
+
+    private static final Instant EPOCH = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Test
+    void idsAreUniqueAndIncreasingWhenTheCounterRollsOver() {
+        AtomicLong now = new AtomicLong(EPOCH.toEpochMilli() + 1_000);
+        // Every fourth read advances the clock, so one millisecond issues far more than 4096 ids
+        AtomicLong reads = new AtomicLong();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, EPOCH, 10,
+                () -> reads.incrementAndGet() % 5000 == 0 ? now.incrementAndGet() : now.get());
+
+        Set<Long> seen = new HashSet<>();
+        long previous = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId("url_sequence");
+            assertTrue(id > previous);
+            assertTrue(seen.add(id));
+            previous = id;
+        }
+    }
+
+    @Test
+    void smallClockRegressionIsWaitedOutAndLargeOneIsRejected() {
+        AtomicLong now = new AtomicLong(EPOCH.toEpochMilli() + 1_000);
+        // The clock moves forward by one millisecond on every read
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, EPOCH, 10, now::getAndIncrement);
+        long first = generator.nextId("url_sequence");
+
+        now.addAndGet(-10); // Within tolerance: the generator spins until the clock catches up
+        assertTrue(generator.nextId("url_sequence") > first);
+
+        SnowflakeIdGenerator strict = new SnowflakeIdGenerator(1, EPOCH, 10, now::get);
+        strict.nextId("url_sequence");
+        now.addAndGet(-50);
+        assertThrows(IllegalStateException.class, () -> strict.nextId("url_sequence"));
+    }
+
+    @Test
+    void idsEncodeToShortBase62Codes() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1023, EPOCH, 10);
+        String code = new ShorteningService().encode(generator.nextId("url_sequence"));
+        assertTrue(code.length() <= 11, code);
+    }
+
+    @Test
+    void nodeIdMustFitInTenBits() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024, EPOCH, 10));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1, EPOCH, 10));
+    }
+}
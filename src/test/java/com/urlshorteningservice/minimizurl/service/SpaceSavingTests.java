@@ -0,0 +1,53 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTests {
+
+    @Test
+    void heavyHittersSurviveALongTailOfDistinctItems() {
+        SpaceSaving summary = new SpaceSaving(20);
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            if (i % 4 == 0) {
+                summary.offer("twitter");           // 25%
+            } else if (i % 10 == 1) {
+                summary.offer("news");              // 10%
+            } else {
+                summary.offer("tail-" + random.nextInt(50_000));
+            }
+        }
+
+        List<SpaceSaving.Entry> top = summary.top(2);
+        assertEquals("twitter", top.get(0).item());
+        assertEquals("news", top.get(1).item());
+        for (SpaceSaving.Entry entry : top) {
+            long trueCount = entry.item().equals("twitter") ? 25_000 : 10_000;
+            assertTrue(entry.count() >= trueCount);
+            assertTrue(entry.count() - entry.error() <= trueCount);
+            assertTrue(entry.error() <= summary.total() / 20);
+        }
+    }
+
+    @Test
+    void mergedSummariesKeepTheGuaranteeOverTheCombinedStream() {
+        SpaceSaving nodeA = new SpaceSaving(10);
+        SpaceSaving nodeB = new SpaceSaving(10);
+        for (int i = 0; i < 10_000; i++) {
+            nodeA.offer(i % 3 == 0 ? "direct" : "a-" + i);
+            nodeB.offer(i % 5 == 0 ? "direct" : "b-" + i);
+        }
+        nodeA.merge(nodeB);
+
+        SpaceSaving.Entry top = nodeA.top(1).get(0);
+        long trueCount = 3_334 + 2_000;
+        assertEquals("direct", top.item());
+        assertTrue(top.count() >= trueCount && top.count() - top.error() <= trueCount);
+        assertEquals(20_000, nodeA.total());
+    }
+}
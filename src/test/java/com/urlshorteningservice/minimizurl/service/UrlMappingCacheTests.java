@@ -0,0 +1,113 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.urlshorteningservice.minimizurl.domain.CachedMapping;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlMappingCacheTests {
+
+    private UrlMappingCache cache;
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void loadThatRacedAnInvalidationIsNotStored() {
+        cache = cache(Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+        // The loader read the old row, then the write invalidated the code before the load finished
+        CachedMapping old = cache.get("abc", code -> {
+            cache.invalidate(code);
+            return mapping("https://example.com/old");
+        });
+        assertEquals("https://example.com/old", old.originalUrl());
+
+        assertEquals("https://example.com/new", cache.get("abc", code -> mapping("https://example.com/new")).originalUrl());
+    }
+
+    @Test
+    void loadThatRacedAFlushIsNotStored() {
+        cache = cache(Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+        cache.get("abc", code -> {
+            cache.invalidateAll();
+            return mapping("https://example.com/old");
+        });
+
+        assertEquals("https://example.com/new", cache.get("abc", code -> mapping("https://example.com/new")).originalUrl());
+    }
+
+    @Test
+    void invalidationOfAnotherCodeDoesNotBlockTheStore() {
+        cache = cache(Duration.ofMinutes(10), Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("abc", code -> {
+            loads.incrementAndGet();
+            cache.invalidate("xyz");
+            return mapping("https://example.com/a");
+        });
+        cache.get("abc", code -> {
+            loads.incrementAndGet();
+            return mapping("https://example.com/a");
+        });
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void staleEntriesAreOnlyServedLongWhileCoherent() {
+        // Every entry is stale immediately; without coherence the stale window is zero
+        cache = cache(Duration.ZERO, Duration.ZERO);
+        cache.put("abc", mapping("https://example.com/old"));
+
+        CachedMapping reloaded = cache.get("abc", code -> mapping("https://example.com/new"));
+        assertEquals("https://example.com/new", reloaded.originalUrl());
+
+        cache.setCoherent(true);
+        cache.put("abc", mapping("https://example.com/old"));
+        CachedMapping stale = cache.get("abc", code -> mapping("https://example.com/newer"));
+        assertEquals("https://example.com/old", stale.originalUrl());
+    }
+
+    @Test
+    void lookupMarksAnswersServedFromStaleEntries() {
+        cache = cache(Duration.ofMinutes(10), Duration.ofMinutes(1));
+        UrlMappingCache.Lookup loaded = cache.lookup("abc", code -> mapping("https://example.com/a"));
+        UrlMappingCache.Lookup hit = cache.lookup("abc", code -> mapping("https://example.com/b"));
+        assertFalse(loaded.stale());
+        assertFalse(hit.stale());
+        cache.shutdown();
+
+        cache = cache(Duration.ZERO, Duration.ZERO);
+        cache.setCoherent(true);
+        cache.put("abc", mapping("https://example.com/old"));
+        UrlMappingCache.Lookup stale = cache.lookup("abc", code -> mapping("https://example.com/new"));
+        assertTrue(stale.stale());
+        assertEquals("https://example.com/old", stale.mapping().originalUrl());
+
+        // Past the stale window the entry is reloaded, so the answer is fresh again
+        cache.setCoherent(false);
+        cache.put("abc", mapping("https://example.com/old"));
+        UrlMappingCache.Lookup reloaded = cache.lookup("abc", code -> mapping("https://example.com/new"));
+        assertFalse(reloaded.stale());
+        assertEquals("https://example.com/new", reloaded.mapping().originalUrl());
+    }
+
+    private static UrlMappingCache cache(Duration ttl, Duration staleWithoutCoherence) {
+        return new UrlMappingCache(1000, ttl, Duration.ofHours(24), staleWithoutCoherence, Duration.ofSeconds(5), 1,
+                new SimpleMeterRegistry());
+    }
+
+    private static CachedMapping mapping(String url) {
+        return new CachedMapping(1, url, null, null);
+    }
+}
@@ -0,0 +1,202 @@
+package com.urlshorteningservice.minimizurl.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.urlshorteningservice.minimizurl.domain.ShortCode;
+import com.urlshorteningservice.minimizurl.domain.UrlMapping;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenRequest;
+import com.urlshorteningservice.minimizurl.dto.BulkShortenResult;
+import com.urlshorteningservice.minimizurl.exception.InvalidRequestException;
+import com.urlshorteningservice.minimizurl.repository.UrlMappingRepository;
+import com.urlshorteningservice.minimizurl.repository.UserRepository;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * shortenBatch maps results back through three index spaces: request items, pending mappings
+ * and the claims/inserts sent to Mongo. Each test fails one of those writes at a known position.
+ */
+class UrlServiceBatchTests {
+
+    private static final long FIRST_INDEX = 1000;
+
+    private final ShorteningService shorteningService = new ShorteningService();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations codeBulk = mock(BulkOperations.class);
+    private final BulkOperations mappingBulk = mock(BulkOperations.class);
+    private final SequenceGeneratorService sequenceGenerator = mock(SequenceGeneratorService.class);
+    private UrlService urlService;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ShortCode.class)).thenReturn(codeBulk);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UrlMapping.class)).thenReturn(mappingBulk);
+        when(codeBulk.insert(anyList())).thenReturn(codeBulk);
+        when(mappingBulk.insert(anyList())).thenReturn(mappingBulk);
+
+        urlService = new UrlService(mock(UrlMappingRepository.class), shorteningService, sequenceGenerator,
+                mongoTemplate, mock(UserRepository.class), mock(UrlMappingCache.class), mock(ShortCodeFilter.class),
+                mock(ClickCounterBuffer.class), mock(ClickEventPipeline.class), mock(UniqueVisitorCounter.class),
+                new ShortCodeIndex(mongoTemplate, shorteningService, false), mock(CircuitBreaker.class), mock(RedirectTable.class));
+    }
+
+    @Test
+    void customCodeRepeatedInChunkOnlyRejectsTheLaterItem() {
+        ids(10, 11);
+
+        List<BulkShortenResult> results = shorten(
+                item("https://example.com/a", "promo"),
+                item("https://example.com/b", "promo"),
+                item("https://example.com/c", null));
+
+        assertResult(results.get(0), 0, BulkShortenResult.CREATED, "promo");
+        assertResult(results.get(1), 1, BulkShortenResult.CONFLICT, "promo");
+        assertResult(results.get(2), 2, BulkShortenResult.CREATED, shorteningService.encode(11));
+        // The repeated item never reaches Mongo: one id each for the first and third
+        verify(sequenceGenerator).generateSequences("url_sequence", 2);
+        assertEquals(List.of("promo", shorteningService.encode(10), shorteningService.encode(11)), claimedCodes());
+    }
+
+    @Test
+    void reservedCustomCodesAreRejectedBeforeAnyWrite() {
+        ids(10);
+
+        List<BulkShortenResult> results = shorten(
+                item("https://example.com/a", "my-links"),
+                item("https://example.com/b", "stats"),
+                item("https://example.com/c", "promo"));
+
+        assertResult(results.get(0), 0, BulkShortenResult.INVALID, "my-links");
+        assertResult(results.get(1), 1, BulkShortenResult.INVALID, "stats");
+        assertResult(results.get(2), 2, BulkShortenResult.CREATED, "promo");
+        verify(sequenceGenerator).generateSequences("url_sequence", 1);
+        assertEquals(List.of("promo", shorteningService.encode(10)), claimedCodes());
+    }
+
+    @Test
+    void reservedCustomCodeIsRejectedForASingleLink() {
+        assertThrows(InvalidRequestException.class, () -> urlService.shortenUrl("https://example.com/a", "my-links"));
+        verifyNoInteractions(sequenceGenerator);
+    }
+
+    @Test
+    void generatedCodeTakenByCustomCodeFailsOnlyThatItem() {
+        ids(10, 11);
+        // Claims: [encode(10)] for the first item, then ["vip", encode(11)] for the second
+        rejectClaims(0, 2);
+
+        List<BulkShortenResult> results = shorten(
+                item("https://example.com/a", null),
+                item("https://example.com/b", "vip"));
+
+        assertResult(results.get(0), 0, BulkShortenResult.FAILED, null);
+        assertEquals("generated code unavailable", results.get(0).getError());
+        // A custom link whose generated alias is taken is still created under its custom code
+        assertResult(results.get(1), 1, BulkShortenResult.CREATED, "vip");
+        assertEquals(List.of(11L), insertedIds());
+    }
+
+    @Test
+    void partialMappingInsertFailureReleasesOnlyThatItemsClaims() {
+        ids(10, 11, 12);
+        // Inserts: [10, 11, 12]; the second hits the unique customCode index
+        rejectInserts(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1));
+
+        List<BulkShortenResult> results = shorten(
+                item("https://example.com/a", null),
+                item("https://example.com/b", "taken"),
+                item("https://example.com/c", null));
+
+        assertResult(results.get(0), 0, BulkShortenResult.CREATED, shorteningService.encode(10));
+        assertResult(results.get(1), 1, BulkShortenResult.CONFLICT, "taken");
+        assertResult(results.get(2), 2, BulkShortenResult.CREATED, shorteningService.encode(12));
+
+        ArgumentCaptor<Query> released = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(released.capture(), eq(ShortCode.class));
+        assertEquals(List.of("taken", shorteningService.encode(11)),
+                released.getValue().getQueryObject().get("_id", Document.class).get("$in"));
+    }
+
+    @Test
+    void invalidItemsKeepTheirIndexWhenLaterItemsFail() {
+        ids(10, 11);
+        rejectInserts(new BulkWriteError(2, "bad document", new BsonDocument(), 1));
+
+        List<BulkShortenResult> results = shorten(
+                item(" ", null),
+                item("https://example.com/a", null),
+                item("https://example.com/b", null));
+
+        assertResult(results.get(0), 0, BulkShortenResult.INVALID, null);
+        assertResult(results.get(1), 1, BulkShortenResult.CREATED, shorteningService.encode(10));
+        assertResult(results.get(2), 2, BulkShortenResult.FAILED, null);
+        assertEquals("bad document", results.get(2).getError());
+    }
+
+    private List<BulkShortenResult> shorten(BulkShortenRequest... items) {
+        return urlService.shortenBatch(Arrays.asList(items), FIRST_INDEX, "user-1");
+    }
+
+    private void ids(long... ids) {
+        when(sequenceGenerator.generateSequences("url_sequence", ids.length)).thenReturn(ids);
+    }
+
+    private void rejectClaims(int... positions) {
+        List<BulkWriteError> errors = new ArrayList<>();
+        for (int position : positions) {
+            errors.add(new BulkWriteError(11000, "duplicate key", new BsonDocument(), position));
+        }
+        when(codeBulk.execute()).thenThrow(bulkFailure(errors));
+    }
+
+    private void rejectInserts(BulkWriteError... errors) {
+        when(mappingBulk.execute()).thenThrow(bulkFailure(List.of(errors)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> claimedCodes() {
+        ArgumentCaptor<List<ShortCode>> claims = ArgumentCaptor.forClass(List.class);
+        verify(codeBulk).insert(claims.capture());
+        return claims.getValue().stream().map(ShortCode::getCode).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> insertedIds() {
+        ArgumentCaptor<List<UrlMapping>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(mappingBulk).insert(inserted.capture());
+        return inserted.getValue().stream().map(UrlMapping::getId).toList();
+    }
+
+    private static BulkOperationException bulkFailure(List<BulkWriteError> errors) {
+        return new BulkOperationException("bulk write failed", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), errors, null, new ServerAddress(), Set.of()));
+    }
+
+    private static BulkShortenRequest item(String url, String customCode) {
+        return new BulkShortenRequest(url, customCode);
+    }
+
+    private static void assertResult(BulkShortenResult result, long offset, String status, String shortCode) {
+        assertEquals(FIRST_INDEX + offset, result.getIndex());
+        assertEquals(status, result.getStatus());
+        assertEquals(shortCode, result.getShortCode());
+    }
+}